@@ -0,0 +1,105 @@
+package com.wind.compare.datasource.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.utils.AESUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 快照文件编解码基准：fastjson 序列化/反序列化、AES 加密/解密(整体/流式)
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CodecBenchmark {
+
+    private static final String AES_PASSWORD = "benchmark-password";
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int tableCount;
+
+    private SQLTableJSON sqlTableJson;
+    private String json;
+    private String encrypted;
+    private byte[] streamEncrypted;
+
+    @Setup
+    public void setup() {
+        sqlTableJson = SnapshotGenerator.generate(tableCount);
+        json = JSON.toJSONString(sqlTableJson);
+        encrypted = AESUtils.encode(json, AES_PASSWORD);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streamEncode(out);
+        streamEncrypted = out.toByteArray();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JSON.toJSONString(sqlTableJson);
+    }
+
+    @Benchmark
+    public SQLTableJSON parseJson() {
+        return JSON.parseObject(json, SQLTableJSON.class);
+    }
+
+    @Benchmark
+    public String aesEncode() {
+        return AESUtils.encode(json, AES_PASSWORD);
+    }
+
+    @Benchmark
+    public String aesDecode() {
+        return AESUtils.decode(encrypted, AES_PASSWORD);
+    }
+
+    /**
+     * 导出：序列化直接写入加密流
+     */
+    @Benchmark
+    public void aesStreamEncode() {
+        streamEncode(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * 上传：边解密边反序列化
+     */
+    @Benchmark
+    public SQLTableJSON aesStreamDecode() throws IOException {
+        try (InputStream in = AESUtils.decryptInputStream(new ByteArrayInputStream(streamEncrypted), AES_PASSWORD)){
+            return JSON.parseObject(in, StandardCharsets.UTF_8, SQLTableJSON.class);
+        }
+    }
+
+    private void streamEncode(OutputStream out) {
+        try (OutputStream encryptOut = AESUtils.encryptOutputStream(out, AES_PASSWORD)){
+            JSON.writeJSONString(encryptOut, sqlTableJson);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.wind.compare.datasource.benchmark;
+
+import com.wind.compare.datasource.diff.DdlRenderer;
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DDL 生成基准：建表语句、字段片段、索引片段
+ * render* 为直接写入复用缓冲区(Appendable)的版本，对比每个片段生成一个字符串的开销
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class DdlBenchmark {
+
+    private DiffEngine diffEngine;
+    private List<Table> tableList;
+    private List<Column> columnList;
+    private List<Index> indexList;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setup() {
+        diffEngine = new DiffEngine(null);
+        tableList = new ArrayList<>(SnapshotGenerator.generate(1000).getSchemaMap().get("schema_0").getTableMap().values());
+        columnList = new ArrayList<>();
+        indexList = new ArrayList<>();
+        buffer = new StringBuilder(1 << 20);
+        tableList.forEach(table -> {
+            columnList.addAll(table.getColumnList());
+            indexList.addAll(table.getIndexList());
+        });
+    }
+
+    /**
+     * 1000张表的建表语句
+     */
+    @Benchmark
+    public List<String> exchangeToNewTableDDL() {
+        return diffEngine.exchangeToNewTableDDL("schema_0", tableList);
+    }
+
+    /**
+     * 1000张表的全部字段片段
+     */
+    @Benchmark
+    public void exchangeToColumnSql(Blackhole blackhole) {
+        for (Column column : columnList) {
+            blackhole.consume(diffEngine.exchangeToColumnSql(column));
+        }
+    }
+
+    /**
+     * 1000张表的全部索引片段
+     */
+    @Benchmark
+    public void exchangeToIndexSql(Blackhole blackhole) {
+        for (Index index : indexList) {
+            blackhole.consume(diffEngine.exchangeToIndexSql(index));
+        }
+    }
+
+    /**
+     * 1000张表的建表语句，写入同一个缓冲区
+     */
+    @Benchmark
+    public int renderCreateTable() throws IOException {
+        buffer.setLength(0);
+        for (Table table : tableList) {
+            DdlRenderer.appendCreateTable(buffer, "schema_0", table);
+        }
+        return buffer.length();
+    }
+
+    /**
+     * 1000张表的全部字段片段，写入同一个缓冲区
+     */
+    @Benchmark
+    public int renderColumn() throws IOException {
+        buffer.setLength(0);
+        for (Column column : columnList) {
+            DdlRenderer.appendColumn(buffer, column);
+            buffer.append(",\n");
+        }
+        return buffer.length();
+    }
+}
@@ -0,0 +1,94 @@
+package com.wind.compare.datasource.benchmark;
+
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compareDiffDataSource 基准：无差异(有/无指纹)、1%的表有差异、对比空库(全部生成建表DDL)
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DiffBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int tableCount;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private SQLTableJSON base;
+    private SQLTableJSON identical;
+    private SQLTableJSON drifted;
+    private SQLTableJSON fingerprintBase;
+    private SQLTableJSON fingerprintIdentical;
+    private SQLTableJSON empty;
+    private ForkJoinPool diffPool;
+    private DiffEngine diffEngine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        base = SnapshotGenerator.generate(tableCount);
+        identical = SnapshotGenerator.drift(base, 0);
+        drifted = SnapshotGenerator.drift(base, 0.01);
+        fingerprintBase = SnapshotGenerator.drift(base, 0);
+        fingerprintIdentical = SnapshotGenerator.drift(base, 0);
+        FingerprintUtils.fill(fingerprintBase, false);
+        FingerprintUtils.fill(fingerprintIdentical, false);
+        empty = new SQLTableJSON().setConnectionAlias("empty");
+        empty.setSchemaMap(new HashMap<>());
+        diffPool = parallel ? new ForkJoinPool() : null;
+        diffEngine = new DiffEngine(diffPool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (diffPool != null){
+            diffPool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public List<String> identicalWithoutFingerprint() {
+        return diffEngine.compareDiffDataSource(base, identical);
+    }
+
+    @Benchmark
+    public List<String> identicalWithFingerprint() {
+        return diffEngine.compareDiffDataSource(fingerprintBase, fingerprintIdentical);
+    }
+
+    @Benchmark
+    public List<String> onePercentDrift() {
+        return diffEngine.compareDiffDataSource(base, drifted);
+    }
+
+    @Benchmark
+    public List<String> againstEmptyTarget() {
+        return diffEngine.compareDiffDataSource(base, empty);
+    }
+}
@@ -0,0 +1,102 @@
+package com.wind.compare.datasource.benchmark;
+
+import com.wind.compare.datasource.enums.SnapshotFormat;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.utils.AESUtils;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import com.wind.compare.datasource.utils.SnapshotUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 快照格式对比：JSON / 二进制 / 二进制+压缩 的写出、解析耗时(明文和加密后)，启动时打印各格式的文件大小
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotFormatBenchmark {
+
+    private static final String AES_PASSWORD = "benchmark-password";
+
+    @Param({"1000", "10000", "100000"})
+    private int tableCount;
+
+    @Param({"JSON", "BINARY", "BINARY_DEFLATE"})
+    private String format;
+
+    private SQLTableJSON sqlTableJson;
+    private SnapshotFormat snapshotFormat;
+    private boolean compress;
+    private byte[] plain;
+    private byte[] encrypted;
+
+    @Setup
+    public void setup() throws IOException {
+        sqlTableJson = SnapshotGenerator.generate(tableCount);
+        FingerprintUtils.fill(sqlTableJson, false);
+        snapshotFormat = format.startsWith("BINARY") ? SnapshotFormat.BINARY : SnapshotFormat.JSON;
+        compress = format.endsWith("DEFLATE");
+        ByteArrayOutputStream plainOut = new ByteArrayOutputStream();
+        SnapshotUtils.writeSnapshot(plainOut, sqlTableJson, snapshotFormat, compress);
+        plain = plainOut.toByteArray();
+        ByteArrayOutputStream encryptedOut = new ByteArrayOutputStream();
+        writeEncrypted(encryptedOut);
+        encrypted = encryptedOut.toByteArray();
+        System.out.printf("%n[%s tables=%d] plain=%d bytes, encrypted file=%d bytes%n", format, tableCount, plain.length, encrypted.length);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        SnapshotUtils.writeSnapshot(OutputStream.nullOutputStream(), sqlTableJson, snapshotFormat, compress);
+    }
+
+    @Benchmark
+    public SQLTableJSON read() throws IOException {
+        return SnapshotUtils.readSnapshot(new ByteArrayInputStream(plain));
+    }
+
+    /**
+     * 导出完整流程：序列化 + 加密 + Base64
+     */
+    @Benchmark
+    public void writeEncrypted() throws IOException {
+        writeEncrypted(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * 上传完整流程：Base64 + 解密 + 解析
+     */
+    @Benchmark
+    public SQLTableJSON readEncrypted() throws IOException {
+        try (InputStream in = AESUtils.decryptInputStream(new ByteArrayInputStream(encrypted), AES_PASSWORD)){
+            return SnapshotUtils.readSnapshot(in);
+        }
+    }
+
+    private void writeEncrypted(OutputStream out) throws IOException {
+        try (OutputStream encryptOut = AESUtils.encryptOutputStream(out, AES_PASSWORD)){
+            SnapshotUtils.writeSnapshot(encryptOut, sqlTableJson, snapshotFormat, compress);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.wind.compare.datasource.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * 基准测试用的快照生成器：按表数量生成结构固定(同一个种子结果相同)的 SQLTableJSON
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+public class SnapshotGenerator {
+
+    /**
+     * 每个库的表数量
+     */
+    private static final int TABLES_PER_SCHEMA = 1000;
+    private static final String[] COLUMN_TYPES = {"bigint(20)", "int(11)", "varchar(64)", "varchar(255)", "datetime", "decimal(10,2)", "text", "tinyint(1)"};
+    private static final String[] COLLATIONS = {"utf8mb4_general_ci", "utf8_general_ci", "utf8mb4_bin"};
+
+    /**
+     * 生成快照
+     * @param tableCount    表总数
+     * @return
+     */
+    public static SQLTableJSON generate(int tableCount) {
+        Random random = new Random(tableCount);
+        SQLTableJSON sqlTableJson = new SQLTableJSON().setConnectionAlias("benchmark");
+        sqlTableJson.setSchemaMap(new HashMap<>());
+        for (int t = 0; t < tableCount; t++) {
+            String schemaName = "schema_" + (t / TABLES_PER_SCHEMA);
+            Schema schema = sqlTableJson.getSchemaMap().computeIfAbsent(schemaName, k -> {
+                Schema newSchema = new Schema();
+                newSchema.setSchemaName(k);
+                newSchema.setDefaultCharacterName("utf8mb4");
+                newSchema.setTableMap(new HashMap<>());
+                return newSchema;
+            });
+            Table table = new Table();
+            table.setTableName("table_" + t);
+            table.setTableEngine("InnoDB");
+            table.setTableCollation(COLLATIONS[random.nextInt(COLLATIONS.length)]);
+            table.setCharset(table.getTableCollation().split("_")[0]);
+            table.setTableComment("业务表" + t);
+            table.setColumnList(new ArrayList<>());
+            table.setIndexList(new ArrayList<>());
+            table.getColumnList().add(column("id", "bigint(20)", false, null, "auto_increment", "主键"));
+            int columnCount = 6 + random.nextInt(12);
+            for (int c = 0; c < columnCount; c++) {
+                String type = COLUMN_TYPES[random.nextInt(COLUMN_TYPES.length)];
+                table.getColumnList().add(column("col_" + c, type, random.nextBoolean(), random.nextInt(4) == 0 ? "0" : null, "", "字段说明" + c));
+            }
+            table.getColumnList().add(column("create_time", "datetime", false, "CURRENT_TIMESTAMP", "DEFAULT_GENERATED", "创建时间"));
+            table.getIndexList().add(index("PRIMARY", "PRIMARY KEY", "id"));
+            table.getIndexList().add(index("idx_col_0", null, "col_0", "col_1"));
+            if (random.nextBoolean()){
+                table.getIndexList().add(index("uk_col_2", "UNIQUE", "col_2"));
+            }
+            schema.getTableMap().put(table.getTableName(), table);
+        }
+        return sqlTableJson;
+    }
+
+    /**
+     * 深拷贝快照，并按比例修改部分表(改字段类型、删字段、改索引)
+     * @param source        源快照
+     * @param driftRatio    被修改的表比例(0~1)
+     * @return
+     */
+    public static SQLTableJSON drift(SQLTableJSON source, double driftRatio) {
+        SQLTableJSON copy = JSON.parseObject(JSON.toJSONString(source), SQLTableJSON.class);
+        Random random = new Random(42);
+        for (Schema schema : copy.getSchemaMap().values()) {
+            for (Table table : schema.getTableMap().values()) {
+                if (random.nextDouble() >= driftRatio){
+                    continue;
+                }
+                table.getColumnList().get(1).setColumnType("varchar(1024)");
+                table.getColumnList().remove(table.getColumnList().size() - 2);
+                table.getIndexList().get(1).setIndexType("HASH");
+            }
+        }
+        return copy;
+    }
+
+    private static Column column(String name, String type, boolean nullable, String columnDefault, String extra, String comment) {
+        Column column = new Column();
+        column.setColumnName(name);
+        column.setColumnType(type);
+        column.setIsNullable(nullable);
+        column.setColumnDefault(columnDefault);
+        column.setExtra(extra);
+        column.setColumnComment(comment);
+        return column;
+    }
+
+    private static Index index(String name, String constraintType, String... columns) {
+        Index index = new Index();
+        index.setIndexName(name);
+        index.setConstraintType(constraintType);
+        index.setIndexType("BTREE");
+        index.setIndexColumnList(new ArrayList<>(Arrays.asList(columns)));
+        index.setIndexComment("");
+        return index;
+    }
+}
@@ -0,0 +1,101 @@
+package com.wind.compare.datasource.benchmark;
+
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 单表对比基准：1000张无差异的表逐张对比
+ * legacy 为旧实现的集合操作部分(每张表 2个toMap + 4个HashSet + ArrayList)，current 为复用临时结构的新实现；
+ * 每张表的分配字节数看 -prof gc 的 gc.alloc.rate.norm(除以1000)
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class TableDiffBenchmark {
+
+    private DiffEngine diffEngine;
+    private List<Table> baseTables;
+    private Map<String, Table> compareTables;
+
+    @Setup
+    public void setup() {
+        SQLTableJSON base = SnapshotGenerator.generate(1000);
+        SQLTableJSON compare = SnapshotGenerator.drift(base, 0);
+        diffEngine = new DiffEngine(null);
+        baseTables = new ArrayList<>(base.getSchemaMap().get("schema_0").getTableMap().values());
+        compareTables = compare.getSchemaMap().get("schema_0").getTableMap();
+    }
+
+    @Benchmark
+    public void current(Blackhole blackhole) {
+        for (Table tableBase : baseTables) {
+            blackhole.consume(diffEngine.compareDiffTable(tableBase, compareTables.get(tableBase.getTableName()), "schema_0"));
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (Table tableBase : baseTables) {
+            blackhole.consume(legacyCompareDiffTable(tableBase, compareTables.get(tableBase.getTableName())));
+        }
+    }
+
+    /**
+     * 旧实现的集合操作部分(不含DDL拼接)
+     */
+    private static List<String> legacyCompareDiffTable(Table tableBase, Table tableCompare) {
+        List<String> columnAndIndexSqlList = new ArrayList<>();
+        Map<String, Column> columnBaseMap = tableBase.getColumnList().stream().collect(Collectors.toMap(Column::getColumnName, column -> column));
+        Map<String, Column> columnCompareMap = tableCompare.getColumnList().stream().collect(Collectors.toMap(Column::getColumnName, column -> column));
+        Set<String> interColumnSet = new HashSet<>(columnBaseMap.keySet());
+        interColumnSet.retainAll(columnCompareMap.keySet());
+        for (String columnKey : interColumnSet) {
+            if (!columnBaseMap.get(columnKey).equals(columnCompareMap.get(columnKey))){
+                columnAndIndexSqlList.add(columnKey);
+            }
+        }
+        Set<String> diffColumnSet = new HashSet<>(columnBaseMap.keySet());
+        diffColumnSet.removeAll(columnCompareMap.keySet());
+        columnAndIndexSqlList.addAll(diffColumnSet);
+        Map<String, Index> indexBaseMap = tableBase.getIndexList().stream().collect(Collectors.toMap(Index::getIndexName, index -> index));
+        Map<String, Index> indexCompareMap = tableCompare.getIndexList().stream().collect(Collectors.toMap(Index::getIndexName, index -> index));
+        Set<String> interIndexSet = new HashSet<>(indexBaseMap.keySet());
+        interIndexSet.retainAll(indexCompareMap.keySet());
+        for (String indexKey : interIndexSet) {
+            if (!indexBaseMap.get(indexKey).equals(indexCompareMap.get(indexKey))){
+                columnAndIndexSqlList.add(indexKey);
+            }
+        }
+        Set<String> diffIndexSet = new HashSet<>(indexBaseMap.keySet());
+        diffIndexSet.removeAll(indexCompareMap.keySet());
+        columnAndIndexSqlList.addAll(diffIndexSet);
+        return columnAndIndexSqlList;
+    }
+}
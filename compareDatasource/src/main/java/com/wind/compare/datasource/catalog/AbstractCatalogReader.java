@@ -0,0 +1,299 @@
+package com.wind.compare.datasource.catalog;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.utils.ChunkedQueryUtils;
+import com.wind.compare.datasource.utils.ScopeFilter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 元数据读取器的公共实现
+ * 各数据库只需提供统一列别名的四条SQL，逐行组装库、表、字段、索引的逻辑都在这里
+ * <pre>
+ * 表SQL：SCHEMA_NAME、DEFAULT_CHARACTER_SET_NAME、TABLE_NAME、ENGINE、TABLE_COLLATION、TABLE_COMMENT、CREATE_TIME、UPDATE_TIME、
+ *       TABLE_ROWS、DATA_LENGTH、INDEX_LENGTH(拿不到时写 NULL)
+ * 字段SQL：TABLE_SCHEMA、TABLE_NAME、COLUMN_NAME、COLUMN_TYPE、IS_NULLABLE(YES/NO)、COLUMN_DEFAULT、COLUMN_COMMENT、COLUMN_KEY、EXTRA
+ * 索引SQL：TABLE_SCHEMA、TABLE_NAME、CONSTRAINT_TYPE、INDEX_NAME、SEQ_IN_INDEX、COLUMN_NAME、SUB_PART、INDEX_TYPE、INDEX_COMMENT
+ * 结构校验SQL：TABLE_SCHEMA、TABLE_NAME、ITEM_KIND(C字段/I索引)、ITEM_COUNT、ITEM_CHECKSUM
+ * </pre>
+ * 字段SQL按 库、表、字段顺序排序，索引SQL按 库、表、索引名、SEQ_IN_INDEX 排序，库名写 ?、表名写 {IN}；
+ * 结构校验SQL是字段、索引两段按表分组的 UNION ALL，每段的库名各写一个 ?
+ * @author wind.tan
+ * @date 2024-05-27
+ */
+public abstract class AbstractCatalogReader implements CatalogReader {
+
+    /**
+     * 范围内所有表的SQL
+     * @param scopeCondition    对比范围条件(以 AND 开头，可能为空字符串)
+     * @return
+     */
+    protected abstract String tableSql(String scopeCondition);
+
+    /**
+     * 表SQL中库名、表名对应的列(通配符规则下推时使用)
+     * @return
+     */
+    protected abstract String schemaColumn();
+
+    protected abstract String tableColumn();
+
+    /**
+     * 一批表的字段SQL
+     * @return
+     */
+    protected abstract String columnSql();
+
+    /**
+     * 一批表的索引SQL
+     * @return
+     */
+    protected abstract String indexSql();
+
+    /**
+     * 一个库下所有表的结构校验SQL
+     * @return
+     */
+    protected abstract String structureChecksumSql();
+
+    @Override
+    public Map<String, Schema> readTables(JdbcTemplate jdbcTemplate, ScopeFilter scopeFilter) {
+        List<Object> params = new ArrayList<>();
+        String scopeCondition = scopeFilter.toSqlCondition(schemaColumn(), tableColumn(), params);
+        Map<String, Schema> schemaMap = new HashMap<>();
+        jdbcTemplate.query(tableSql(scopeCondition), rs -> {
+            String schemaName = rs.getString("SCHEMA_NAME");
+            String tableName = rs.getString("TABLE_NAME");
+            // 正则规则无法下推，逐行再过滤一次
+            if (!scopeFilter.isAll() && (!scopeFilter.acceptSchema(schemaName) || !scopeFilter.acceptTable(tableName))){
+                return;
+            }
+            // 获取库对象
+            Schema schema = schemaMap.get(schemaName);
+            if (null == schema){
+                schema = new Schema();
+                schema.setSchemaName(schemaName);
+                schema.setDefaultCharacterName(rs.getString("DEFAULT_CHARACTER_SET_NAME"));
+                schema.setTableMap(new HashMap<>());
+                schemaMap.put(schemaName, schema);
+            }
+            // 在库对象中写入表数据
+            Table table = new Table();
+            table.setTableName(tableName);
+            table.setTableEngine(rs.getString("ENGINE"));
+            table.setTableCollation(rs.getString("TABLE_COLLATION"));
+            table.setCharset(charset(rs));
+            table.setTableComment(rs.getString("TABLE_COMMENT"));
+            table.setCreateTime(toDate(rs.getObject("CREATE_TIME")));
+            table.setUpdateTime(toDate(rs.getObject("UPDATE_TIME")));
+            table.setTableRows(toLong(rs.getObject("TABLE_ROWS")));
+            table.setDataLength(toLong(rs.getObject("DATA_LENGTH")));
+            table.setIndexLength(toLong(rs.getObject("INDEX_LENGTH")));
+            // 字段、索引由后续流式查询逐行追加
+            table.setColumnList(new ArrayList<>());
+            table.setIndexList(new ArrayList<>());
+            schema.getTableMap().put(tableName, table);
+        }, params.toArray());
+        return schemaMap;
+    }
+
+    /**
+     * 表的字符集，默认取排序规则"_"分割后的第一个参数【eg：utf8_general_ci ==> utf8】
+     * @param rs 表SQL的当前行
+     * @return
+     * @throws SQLException
+     */
+    protected String charset(ResultSet rs) throws SQLException {
+        String collation = rs.getString("TABLE_COLLATION");
+        return collation == null ? rs.getString("DEFAULT_CHARACTER_SET_NAME") : collation.split("_")[0];
+    }
+
+    /**
+     * 逐行流式读取(RowCallbackHandler)，每行直接构建 Column 写入对应的 Table，不落地中间 List<Map>
+     */
+    @Override
+    public long readColumns(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList, int maxInSize) {
+        // 结果按 库名.表名 有序，相邻行大概率属于同一张表，缓存上一次命中的表减少查找
+        Table[] current = new Table[1];
+        String[] currentKey = new String[2];
+        long[] rows = new long[1];
+        ChunkedQueryUtils.queryInChunks(jdbcTemplate, columnSql(), Collections.singletonList(schemaName), tableNameList, maxInSize, rs -> {
+            rows[0]++;
+            String rowSchemaName = rs.getString("TABLE_SCHEMA");
+            String tableName = rs.getString("TABLE_NAME");
+            if (!rowSchemaName.equals(currentKey[0]) || !tableName.equals(currentKey[1])){
+                currentKey[0] = rowSchemaName;
+                currentKey[1] = tableName;
+                current[0] = findTable(sqlTableJSON, rowSchemaName, tableName);
+            }
+            // 库名、表名交叉匹配出来的非目标表(如视图)，直接跳过
+            if (current[0] == null){
+                return;
+            }
+            current[0].getColumnList().add(toColumn(rs));
+        });
+        return rows[0];
+    }
+
+    /**
+     * 字段SQL的当前行转换为字段
+     * @param rs 当前行
+     * @return
+     * @throws SQLException
+     */
+    protected Column toColumn(ResultSet rs) throws SQLException {
+        Column column = new Column();
+        column.setColumnName(rs.getString("COLUMN_NAME"));
+        column.setColumnType(rs.getString("COLUMN_TYPE"));
+        column.setIsNullable("YES".equals(rs.getString("IS_NULLABLE")));
+        column.setColumnDefault(rs.getString("COLUMN_DEFAULT"));
+        column.setColumnComment(rs.getString("COLUMN_COMMENT"));
+        column.setColumnKey(rs.getString("COLUMN_KEY"));
+        column.setExtra(rs.getString("EXTRA"));
+        return column;
+    }
+
+    /**
+     * 同一个索引的多行字段是连续的，直接拼接到当前索引上
+     * [必须按 SEQ_IN_INDEX 顺序拼接字段，顺序乱了就打乱了最左匹配规则了!!!]
+     */
+    @Override
+    public long readIndexes(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList, int maxInSize) {
+        Table[] currentTable = new Table[1];
+        Index[] currentIndex = new Index[1];
+        String[] currentKey = new String[3];
+        long[] rows = new long[1];
+        ChunkedQueryUtils.queryInChunks(jdbcTemplate, indexSql(), Collections.singletonList(schemaName), tableNameList, maxInSize, rs -> {
+            rows[0]++;
+            String rowSchemaName = rs.getString("TABLE_SCHEMA");
+            String tableName = rs.getString("TABLE_NAME");
+            String indexName = rs.getString("INDEX_NAME");
+            boolean sameTable = rowSchemaName.equals(currentKey[0]) && tableName.equals(currentKey[1]);
+            if (!sameTable){
+                currentKey[0] = rowSchemaName;
+                currentKey[1] = tableName;
+                currentTable[0] = findTable(sqlTableJSON, rowSchemaName, tableName);
+            }
+            if (currentTable[0] == null){
+                return;
+            }
+            // 同一张表的同一个索引，只追加字段
+            if (sameTable && indexName.equals(currentKey[2])){
+                currentIndex[0].getIndexColumnList().add(indexColumn(rs));
+                return;
+            }
+            currentKey[2] = indexName;
+            Index index = new Index();
+            index.setIndexName(indexName);
+            index.setConstraintType(rs.getString("CONSTRAINT_TYPE"));
+            index.setIndexType(rs.getString("INDEX_TYPE"));
+            index.setIndexComment(rs.getString("INDEX_COMMENT"));
+            index.setIndexColumnList(new ArrayList<>(1));
+            index.getIndexColumnList().add(indexColumn(rs));
+            currentIndex[0] = index;
+            currentTable[0].getIndexList().add(index);
+        });
+        return rows[0];
+    }
+
+    /**
+     * 同一张表的字段、索引两行分别计算摘要后相加(与行的顺序无关)
+     */
+    @Override
+    public long readStructureChecksums(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName) {
+        long[] rows = new long[1];
+        jdbcTemplate.query(structureChecksumSql(), rs -> {
+            rows[0]++;
+            Table table = findTable(sqlTableJSON, rs.getString("TABLE_SCHEMA"), rs.getString("TABLE_NAME"));
+            if (table == null){
+                return;
+            }
+            long part = MurmurHash.hash64(rs.getString("ITEM_KIND") + ':' + rs.getLong("ITEM_COUNT") + ':' + rs.getString("ITEM_CHECKSUM"));
+            table.setStructureChecksum(table.getStructureChecksum() == null ? part : table.getStructureChecksum() + part);
+        }, schemaName, schemaName);
+        return rows[0];
+    }
+
+    /**
+     * 拼接索引 字段(长度)
+     * @param rs 当前行
+     * @return
+     * @throws SQLException
+     */
+    protected String indexColumn(ResultSet rs) throws SQLException {
+        long subPart = rs.getLong("SUB_PART");
+        boolean hasSubPart = !rs.wasNull();
+        StringBuilder indexColumn = new StringBuilder().append(rs.getString("COLUMN_NAME"));
+        if (hasSubPart){
+            indexColumn.append("(").append(subPart).append(")");
+        }
+        return indexColumn.toString();
+    }
+
+    /**
+     * 去掉字符串字面量默认值两边的单引号【eg：'abc' ==> abc、NULL ==> null】
+     * MySQL 的 COLUMN_DEFAULT 不带引号，MariaDB(10.2.7+)、H2 返回的是表达式文本，统一后才能跨库对比
+     * @param columnDefault 默认值表达式
+     * @return
+     */
+    protected static String unquoteDefault(String columnDefault) {
+        if (columnDefault == null || "NULL".equalsIgnoreCase(columnDefault)){
+            return null;
+        }
+        if (columnDefault.length() >= 2 && columnDefault.startsWith("'") && columnDefault.endsWith("'")){
+            return columnDefault.substring(1, columnDefault.length() - 1).replace("''", "'");
+        }
+        return columnDefault;
+    }
+
+    /**
+     * 根据库名、表名获取已写入的表对象
+     * @param sqlTableJSON  JSON对象
+     * @param schemaName    库名
+     * @param tableName     表名
+     * @return 不存在时返回null
+     */
+    protected static Table findTable(SQLTableJSON sqlTableJSON, String schemaName, String tableName) {
+        Schema schema = sqlTableJSON.getSchemaMap().get(schemaName);
+        return schema == null ? null : schema.getTableMap().get(tableName);
+    }
+
+    /**
+     * 数值字段转换为Long(不同数据库返回 BigInteger、BigDecimal、Long 等)
+     * @param value 字段值
+     * @return
+     */
+    private static Long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    /**
+     * 时间字段转换为Date(不同版本的驱动返回 Timestamp 或 LocalDateTime)
+     * @param value 字段值
+     * @return
+     */
+    private static Date toDate(Object value) {
+        if (value instanceof Date){
+            return new Date(((Date) value).getTime());
+        }
+        if (value instanceof LocalDateTime){
+            return Timestamp.valueOf((LocalDateTime) value);
+        }
+        return null;
+    }
+}
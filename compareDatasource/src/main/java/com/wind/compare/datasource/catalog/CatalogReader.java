@@ -0,0 +1,79 @@
+package com.wind.compare.datasource.catalog;
+
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.utils.ScopeFilter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 元数据读取器(每种数据库一个实现，由 DatasourceDriveType 指定)
+ * 库表清单一条SQL查出；字段、索引按 (库,表IN) 分块批量查询，不逐表调用 DatabaseMetaData
+ * @author wind.tan
+ * @date 2024-05-27
+ */
+public interface CatalogReader {
+
+    /**
+     * 拼接连接串
+     * @param datasourceSetting 数据库配置
+     * @return
+     */
+    String jdbcUrl(DatasourceSettingDto datasourceSetting);
+
+    /**
+     * 读取范围内的库、表(字段、索引为空列表，由后续批量查询追加)
+     * @param jdbcTemplate  jdbcTemplate
+     * @param scopeFilter   对比范围
+     * @return key(库名)、value(库对象)
+     */
+    Map<String, Schema> readTables(JdbcTemplate jdbcTemplate, ScopeFilter scopeFilter);
+
+    /**
+     * 读取同一个库下一批表的字段，追加到 sqlTableJSON 中对应的表
+     * @param jdbcTemplate  jdbcTemplate
+     * @param sqlTableJSON  JSON对象(已写入表数据)
+     * @param schemaName    库名
+     * @param tableNameList 表名集合
+     * @param maxInSize     单条SQL中 IN 列表的最大参数数量
+     * @return 读取的行数
+     */
+    long readColumns(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList, int maxInSize);
+
+    /**
+     * 读取同一个库下一批表的索引，追加到 sqlTableJSON 中对应的表
+     * @param jdbcTemplate  jdbcTemplate
+     * @param sqlTableJSON  JSON对象(已写入表数据)
+     * @param schemaName    库名
+     * @param tableNameList 表名集合
+     * @param maxInSize     单条SQL中 IN 列表的最大参数数量
+     * @return 读取的行数
+     */
+    long readIndexes(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList, int maxInSize);
+
+    /**
+     * 读取一个库下所有表的结构校验值，写入 sqlTableJSON 中对应的表
+     * 字段、索引元数据按表分组聚合(行数 + 逐行CRC之和)，一条SQL查完整个库，增量导出时以它判断表结构是否变化
+     * @param jdbcTemplate  jdbcTemplate
+     * @param sqlTableJSON  JSON对象(已写入表数据)
+     * @param schemaName    库名
+     * @return 读取的行数
+     */
+    long readStructureChecksums(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName);
+
+    /**
+     * 读取同一个库下一批表的原生建表语句(规范化后连同摘要写入对应的表)
+     * 默认不支持，直接跳过
+     * @param jdbcTemplate  jdbcTemplate
+     * @param sqlTableJSON  JSON对象(已写入表数据)
+     * @param schemaName    库名
+     * @param tableNameList 表名集合
+     * @return 读取的表数量
+     */
+    default long readCreateSql(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList) {
+        return 0;
+    }
+}
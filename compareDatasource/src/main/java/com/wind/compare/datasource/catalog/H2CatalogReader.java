@@ -0,0 +1,137 @@
+package com.wind.compare.datasource.catalog;
+
+import cn.hutool.core.util.StrUtil;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.utils.ChunkedQueryUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * H2(2.x) 元数据读取器，连接 TCP Server 模式的库
+ * 字段类型由 DATA_TYPE + 长度/精度拼接；主键统一命名为 PRIMARY(H2 自动生成的主键名每个库都不一样)
+ * @author wind.tan
+ * @date 2024-05-27
+ */
+public class H2CatalogReader extends AbstractCatalogReader {
+
+    /**
+     * 未指定 database 时连接的默认库
+     */
+    private static final String DEFAULT_DATABASE = "~/test";
+
+    @Override
+    public String jdbcUrl(DatasourceSettingDto datasourceSetting) {
+        String database = StrUtil.blankToDefault(datasourceSetting.getDatabase(), DEFAULT_DATABASE);
+        return "jdbc:h2:tcp://"+datasourceSetting.getIp()+":"+datasourceSetting.getPort()+"/"+database;
+    }
+
+    @Override
+    protected String tableSql(String scopeCondition) {
+        return "SELECT \n" +
+                "\tsc.SCHEMA_NAME,\n" +
+                "\tsc.DEFAULT_CHARACTER_SET_NAME,\n" +
+                "\ttab.TABLE_NAME,\n" +
+                "\ttab.STORAGE_TYPE AS ENGINE,\n" +
+                "\tsc.DEFAULT_COLLATION_NAME AS TABLE_COLLATION,\n" +
+                "\tCOALESCE(tab.REMARKS, '') AS TABLE_COMMENT,\n" +
+                "\tNULL AS CREATE_TIME,\n" +
+                "\tNULL AS UPDATE_TIME,\n" +
+                "\ttab.ROW_COUNT_ESTIMATE AS TABLE_ROWS,\n" +
+                "\tNULL AS DATA_LENGTH,\n" +
+                "\tNULL AS INDEX_LENGTH\n" +
+                "FROM INFORMATION_SCHEMA.TABLES tab\n" +
+                "INNER JOIN INFORMATION_SCHEMA.SCHEMATA sc ON sc.SCHEMA_NAME = tab.TABLE_SCHEMA\n" +
+                "WHERE tab.TABLE_TYPE = 'BASE TABLE' AND sc.SCHEMA_NAME != 'INFORMATION_SCHEMA'" + scopeCondition;
+    }
+
+    @Override
+    protected String schemaColumn() {
+        return "sc.SCHEMA_NAME";
+    }
+
+    @Override
+    protected String tableColumn() {
+        return "tab.TABLE_NAME";
+    }
+
+    /**
+     * H2 的排序规则默认是 OFF，字符集直接取库的字符集
+     */
+    @Override
+    protected String charset(ResultSet rs) throws SQLException {
+        return rs.getString("DEFAULT_CHARACTER_SET_NAME");
+    }
+
+    @Override
+    protected String columnSql() {
+        return "SELECT \n" +
+                "\tcol.TABLE_SCHEMA,\n" +
+                "\tcol.TABLE_NAME,\n" +
+                "\tcol.COLUMN_NAME,\n" +
+                "\tCASE WHEN col.CHARACTER_MAXIMUM_LENGTH IS NOT NULL THEN CONCAT(col.DATA_TYPE, '(', col.CHARACTER_MAXIMUM_LENGTH, ')')\n" +
+                "\t\tWHEN col.DATA_TYPE IN ('NUMERIC', 'DECIMAL') THEN CONCAT(col.DATA_TYPE, '(', col.NUMERIC_PRECISION, ',', col.NUMERIC_SCALE, ')')\n" +
+                "\t\tELSE col.DATA_TYPE END AS COLUMN_TYPE,\n" +
+                "\tcol.IS_NULLABLE,\n" +
+                "\tcol.COLUMN_DEFAULT,\n" +
+                "\tCOALESCE(col.REMARKS, '') AS COLUMN_COMMENT,\n" +
+                "\t'' AS COLUMN_KEY,\n" +
+                "\tCASE WHEN col.IS_IDENTITY = 'YES' THEN 'auto_increment' ELSE '' END AS EXTRA\n" +
+                "FROM INFORMATION_SCHEMA.COLUMNS col\n" +
+                "WHERE col.TABLE_SCHEMA = ?\n" +
+                "AND col.TABLE_NAME IN ("+ChunkedQueryUtils.IN_PLACEHOLDER+")\n" +
+                "ORDER BY col.TABLE_SCHEMA, col.TABLE_NAME, col.ORDINAL_POSITION";
+    }
+
+    @Override
+    protected Column toColumn(ResultSet rs) throws SQLException {
+        Column column = super.toColumn(rs);
+        column.setColumnDefault(unquoteDefault(column.getColumnDefault()));
+        return column;
+    }
+
+    @Override
+    protected String indexSql() {
+        return "SELECT \n" +
+                "\tidx.TABLE_SCHEMA,\n" +
+                "\tidx.TABLE_NAME,\n" +
+                "\tCASE idx.INDEX_TYPE_NAME WHEN 'PRIMARY KEY' THEN 'PRIMARY KEY' WHEN 'UNIQUE INDEX' THEN 'UNIQUE' END AS CONSTRAINT_TYPE,\n" +
+                "\tCASE WHEN idx.INDEX_TYPE_NAME = 'PRIMARY KEY' THEN 'PRIMARY' ELSE idx.INDEX_NAME END AS INDEX_NAME,\n" +
+                "\tic.ORDINAL_POSITION AS SEQ_IN_INDEX,\n" +
+                "\tic.COLUMN_NAME,\n" +
+                "\tNULL AS SUB_PART,\n" +
+                "\t'BTREE' AS INDEX_TYPE,\n" +
+                "\tCOALESCE(idx.REMARKS, '') AS INDEX_COMMENT\n" +
+                "FROM INFORMATION_SCHEMA.INDEXES idx\n" +
+                "INNER JOIN INFORMATION_SCHEMA.INDEX_COLUMNS ic ON ic.INDEX_SCHEMA = idx.INDEX_SCHEMA AND ic.INDEX_NAME = idx.INDEX_NAME\n" +
+                "WHERE idx.TABLE_SCHEMA = ?\n" +
+                "AND idx.TABLE_NAME IN ("+ChunkedQueryUtils.IN_PLACEHOLDER+")\n" +
+                "ORDER BY 1, 2, 4, 5";
+    }
+
+    @Override
+    protected String structureChecksumSql() {
+        return "SELECT \n" +
+                "\tcol.TABLE_SCHEMA,\n" +
+                "\tcol.TABLE_NAME,\n" +
+                "\t'C' AS ITEM_KIND,\n" +
+                "\tCOUNT(*) AS ITEM_COUNT,\n" +
+                "\tSUM(ORA_HASH(CONCAT_WS('|', col.ORDINAL_POSITION, col.COLUMN_NAME, col.DATA_TYPE, col.CHARACTER_MAXIMUM_LENGTH, col.NUMERIC_PRECISION, col.NUMERIC_SCALE,\n" +
+                "\t\tcol.IS_NULLABLE, col.COLUMN_DEFAULT IS NULL, col.COLUMN_DEFAULT, col.REMARKS, col.IS_IDENTITY))) AS ITEM_CHECKSUM\n" +
+                "FROM INFORMATION_SCHEMA.COLUMNS col\n" +
+                "WHERE col.TABLE_SCHEMA = ?\n" +
+                "GROUP BY col.TABLE_SCHEMA, col.TABLE_NAME\n" +
+                "UNION ALL\n" +
+                "SELECT \n" +
+                "\tidx.TABLE_SCHEMA,\n" +
+                "\tidx.TABLE_NAME,\n" +
+                "\t'I' AS ITEM_KIND,\n" +
+                "\tCOUNT(*) AS ITEM_COUNT,\n" +
+                "\tSUM(ORA_HASH(CONCAT_WS('|', idx.INDEX_NAME, idx.INDEX_TYPE_NAME, ic.ORDINAL_POSITION, ic.COLUMN_NAME, idx.REMARKS))) AS ITEM_CHECKSUM\n" +
+                "FROM INFORMATION_SCHEMA.INDEXES idx\n" +
+                "INNER JOIN INFORMATION_SCHEMA.INDEX_COLUMNS ic ON ic.INDEX_SCHEMA = idx.INDEX_SCHEMA AND ic.INDEX_NAME = idx.INDEX_NAME\n" +
+                "WHERE idx.TABLE_SCHEMA = ?\n" +
+                "GROUP BY idx.TABLE_SCHEMA, idx.TABLE_NAME";
+    }
+}
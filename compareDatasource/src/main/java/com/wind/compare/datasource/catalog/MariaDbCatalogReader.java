@@ -0,0 +1,28 @@
+package com.wind.compare.datasource.catalog;
+
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * MariaDB 元数据读取器
+ * information_schema 与 MySQL 一致，只有 COLUMN_DEFAULT 返回的是表达式文本('abc'、NULL)，需要还原成 MySQL 的形式
+ * @author wind.tan
+ * @date 2024-05-27
+ */
+public class MariaDbCatalogReader extends MySqlCatalogReader {
+
+    @Override
+    public String jdbcUrl(DatasourceSettingDto datasourceSetting) {
+        return "jdbc:mariadb://"+datasourceSetting.getIp()+":"+datasourceSetting.getPort()+"?cachePrepStmts=true";
+    }
+
+    @Override
+    protected Column toColumn(ResultSet rs) throws SQLException {
+        Column column = super.toColumn(rs);
+        column.setColumnDefault(unquoteDefault(column.getColumnDefault()));
+        return column;
+    }
+}
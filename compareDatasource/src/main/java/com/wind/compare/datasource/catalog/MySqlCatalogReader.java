@@ -0,0 +1,156 @@
+package com.wind.compare.datasource.catalog;
+
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.utils.ChunkedQueryUtils;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * MySQL 元数据读取器(information_schema)
+ * @author wind.tan
+ * @date 2024-05-27
+ */
+public class MySqlCatalogReader extends AbstractCatalogReader {
+
+    @Override
+    public String jdbcUrl(DatasourceSettingDto datasourceSetting) {
+        return "jdbc:mysql://"+datasourceSetting.getIp()+":"+datasourceSetting.getPort()+"?useCursorFetch=true&cachePrepStmts=true";
+    }
+
+    @Override
+    protected String tableSql(String scopeCondition) {
+        return "SELECT \n" +
+                "\tsc.SCHEMA_NAME,\n" +
+                "\tsc.DEFAULT_CHARACTER_SET_NAME,\n" +
+                "\ttab.TABLE_NAME,\n" +
+                "\ttab.ENGINE,\n" +
+                "\ttab.TABLE_COLLATION,\n" +
+                "\ttab.TABLE_COMMENT,\n" +
+                "\ttab.CREATE_TIME,\n" +
+                "\ttab.UPDATE_TIME,\n" +
+                "\ttab.TABLE_ROWS,\n" +
+                "\ttab.DATA_LENGTH,\n" +
+                "\ttab.INDEX_LENGTH\n" +
+                "FROM information_schema.TABLES tab\n" +
+                "INNER JOIN information_schema.SCHEMATA sc ON sc.SCHEMA_NAME = tab.TABLE_SCHEMA\n" +
+                "WHERE tab.TABLE_TYPE = 'BASE TABLE' AND sc.SCHEMA_NAME != 'information_schema'" + scopeCondition;
+    }
+
+    @Override
+    protected String schemaColumn() {
+        return "sc.SCHEMA_NAME";
+    }
+
+    @Override
+    protected String tableColumn() {
+        return "tab.TABLE_NAME";
+    }
+
+    @Override
+    protected String columnSql() {
+        return "SELECT \n" +
+                "\tcol.TABLE_SCHEMA,\n" +
+                "\tcol.TABLE_NAME,\n" +
+                "\tcol.COLUMN_NAME,\n" +
+                "\tcol.COLUMN_TYPE,\n" +
+                "\tcol.IS_NULLABLE,\n" +
+                "\tcol.COLUMN_DEFAULT,\n" +
+                "\tcol.COLUMN_COMMENT,\n" +
+                "\tcol.COLUMN_KEY,\n" +
+                "\tcol.EXTRA\n" +
+                "FROM\n" +
+                "\tinformation_schema.COLUMNS col\n" +
+                "WHERE col.TABLE_SCHEMA = ?\n" +
+                "AND col.TABLE_NAME IN ("+ChunkedQueryUtils.IN_PLACEHOLDER+")\n" +
+                "ORDER BY col.TABLE_SCHEMA, col.TABLE_NAME, col.ORDINAL_POSITION;";
+    }
+
+    @Override
+    protected String indexSql() {
+        return "SELECT \n" +
+                "\tsta.TABLE_SCHEMA,\n" +
+                "\tsta.TABLE_NAME,\n" +
+                "\ttabcon.CONSTRAINT_TYPE,\n" +
+                "\tsta.INDEX_NAME,\n" +
+                "\tsta.SEQ_IN_INDEX,\n" +
+                "\tsta.COLUMN_NAME,\n" +
+                "\tsta.SUB_PART,\n" +
+                "\tsta.INDEX_TYPE,\n" +
+                "\tsta.INDEX_COMMENT\n" +
+                "FROM information_schema.STATISTICS sta\n" +
+                "LEFT JOIN information_schema.TABLE_CONSTRAINTS tabcon ON tabcon.TABLE_SCHEMA = sta.TABLE_SCHEMA AND tabcon.TABLE_NAME = sta.TABLE_NAME AND tabcon.CONSTRAINT_NAME = sta.INDEX_NAME\n" +
+                "WHERE sta.TABLE_SCHEMA = ?\n" +
+                "AND sta.TABLE_NAME IN ("+ChunkedQueryUtils.IN_PLACEHOLDER+")\n" +
+                "ORDER BY sta.TABLE_SCHEMA, sta.TABLE_NAME, sta.INDEX_NAME, sta.SEQ_IN_INDEX;";
+    }
+
+    /**
+     * 字段、索引的每一行拼接后取 CRC32 再按表求和；字段带上位置，调整字段顺序也能发现
+     * (MySQL 8 以 INSTANT 算法执行的 ALTER 不会刷新 CREATE_TIME，只能靠这里发现)
+     */
+    @Override
+    protected String structureChecksumSql() {
+        return "SELECT \n" +
+                "\tcol.TABLE_SCHEMA,\n" +
+                "\tcol.TABLE_NAME,\n" +
+                "\t'C' AS ITEM_KIND,\n" +
+                "\tCOUNT(*) AS ITEM_COUNT,\n" +
+                "\tSUM(CRC32(CONCAT_WS('|', col.ORDINAL_POSITION, col.COLUMN_NAME, col.COLUMN_TYPE, col.IS_NULLABLE, col.COLUMN_DEFAULT IS NULL, col.COLUMN_DEFAULT, col.COLUMN_COMMENT, col.EXTRA, col.COLLATION_NAME))) AS ITEM_CHECKSUM\n" +
+                "FROM information_schema.COLUMNS col\n" +
+                "WHERE col.TABLE_SCHEMA = ?\n" +
+                "GROUP BY col.TABLE_SCHEMA, col.TABLE_NAME\n" +
+                "UNION ALL\n" +
+                "SELECT \n" +
+                "\tsta.TABLE_SCHEMA,\n" +
+                "\tsta.TABLE_NAME,\n" +
+                "\t'I' AS ITEM_KIND,\n" +
+                "\tCOUNT(*) AS ITEM_COUNT,\n" +
+                "\tSUM(CRC32(CONCAT_WS('|', sta.INDEX_NAME, sta.SEQ_IN_INDEX, sta.COLUMN_NAME, sta.SUB_PART, sta.NON_UNIQUE, sta.INDEX_TYPE, sta.INDEX_COMMENT))) AS ITEM_CHECKSUM\n" +
+                "FROM information_schema.STATISTICS sta\n" +
+                "WHERE sta.TABLE_SCHEMA = ?\n" +
+                "GROUP BY sta.TABLE_SCHEMA, sta.TABLE_NAME";
+    }
+
+    /**
+     * SHOW CREATE TABLE 只能逐表执行：整批表占用同一个连接、复用同一个 Statement 依次执行，
+     * 批次之间由调用方并行
+     */
+    @Override
+    public long readCreateSql(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            long count = 0;
+            try (Statement statement = con.createStatement()){
+                for (String tableName : tableNameList) {
+                    Table table = findTable(sqlTableJSON, schemaName, tableName);
+                    if (table == null){
+                        continue;
+                    }
+                    try (ResultSet rs = statement.executeQuery("SHOW CREATE TABLE " + quote(schemaName) + "." + quote(tableName))){
+                        if (rs.next()){
+                            table.setCreateSql(FingerprintUtils.normalizeCreateSql(rs.getString(2)));
+                            table.setCreateSqlHash(FingerprintUtils.createSqlHash(table.getCreateSql()));
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+        });
+    }
+
+    /**
+     * 库名、表名加反引号(名称中的反引号转义为两个)
+     * @param name  名称
+     * @return
+     */
+    private static String quote(String name) {
+        return "`" + name.replace("`", "``") + "`";
+    }
+}
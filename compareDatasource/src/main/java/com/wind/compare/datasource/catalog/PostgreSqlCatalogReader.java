@@ -0,0 +1,151 @@
+package com.wind.compare.datasource.catalog;
+
+import cn.hutool.core.util.StrUtil;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.utils.ChunkedQueryUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * PostgreSQL 元数据读取器(pg_catalog，一个连接只读取一个 database 下的各个 schema)
+ * 注：PostgreSQL 没有表的创建/修改时间，增量导出时只按结构校验值判断表是否变化
+ * @author wind.tan
+ * @date 2024-05-27
+ */
+public class PostgreSqlCatalogReader extends AbstractCatalogReader {
+
+    /**
+     * 未指定 database 时连接的默认库
+     */
+    private static final String DEFAULT_DATABASE = "postgres";
+
+    @Override
+    public String jdbcUrl(DatasourceSettingDto datasourceSetting) {
+        String database = StrUtil.blankToDefault(datasourceSetting.getDatabase(), DEFAULT_DATABASE);
+        return "jdbc:postgresql://"+datasourceSetting.getIp()+":"+datasourceSetting.getPort()+"/"+database;
+    }
+
+    @Override
+    protected String tableSql(String scopeCondition) {
+        return "SELECT \n" +
+                "\tn.nspname AS SCHEMA_NAME,\n" +
+                "\tpg_encoding_to_char(db.encoding) AS DEFAULT_CHARACTER_SET_NAME,\n" +
+                "\tc.relname AS TABLE_NAME,\n" +
+                "\tCOALESCE(am.amname, 'heap') AS ENGINE,\n" +
+                "\tdb.datcollate AS TABLE_COLLATION,\n" +
+                "\tCOALESCE(obj_description(c.oid, 'pg_class'), '') AS TABLE_COMMENT,\n" +
+                "\tNULL AS CREATE_TIME,\n" +
+                "\tNULL AS UPDATE_TIME,\n" +
+                "\tGREATEST(c.reltuples, 0)::bigint AS TABLE_ROWS,\n" +
+                "\tpg_relation_size(c.oid) AS DATA_LENGTH,\n" +
+                "\tpg_indexes_size(c.oid) AS INDEX_LENGTH\n" +
+                "FROM pg_catalog.pg_class c\n" +
+                "INNER JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace\n" +
+                "LEFT JOIN pg_catalog.pg_am am ON am.oid = c.relam\n" +
+                "INNER JOIN pg_catalog.pg_database db ON db.datname = current_database()\n" +
+                "WHERE c.relkind IN ('r', 'p') AND NOT c.relispartition\n" +
+                "AND n.nspname != 'information_schema' AND n.nspname NOT LIKE 'pg\\_%'" + scopeCondition;
+    }
+
+    @Override
+    protected String schemaColumn() {
+        return "n.nspname";
+    }
+
+    @Override
+    protected String tableColumn() {
+        return "c.relname";
+    }
+
+    /**
+     * 排序规则是 en_US.UTF-8 这种形式，字符集直接取库的编码
+     */
+    @Override
+    protected String charset(ResultSet rs) throws SQLException {
+        return rs.getString("DEFAULT_CHARACTER_SET_NAME");
+    }
+
+    @Override
+    protected String columnSql() {
+        return "SELECT \n" +
+                "\tn.nspname AS TABLE_SCHEMA,\n" +
+                "\tc.relname AS TABLE_NAME,\n" +
+                "\ta.attname AS COLUMN_NAME,\n" +
+                "\tformat_type(a.atttypid, a.atttypmod) AS COLUMN_TYPE,\n" +
+                "\tCASE WHEN a.attnotnull THEN 'NO' ELSE 'YES' END AS IS_NULLABLE,\n" +
+                "\tpg_get_expr(d.adbin, d.adrelid) AS COLUMN_DEFAULT,\n" +
+                "\tCOALESCE(col_description(c.oid, a.attnum), '') AS COLUMN_COMMENT,\n" +
+                "\t'' AS COLUMN_KEY,\n" +
+                "\tCASE WHEN a.attidentity IN ('a', 'd') THEN 'auto_increment' ELSE '' END AS EXTRA\n" +
+                "FROM pg_catalog.pg_attribute a\n" +
+                "INNER JOIN pg_catalog.pg_class c ON c.oid = a.attrelid\n" +
+                "INNER JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace\n" +
+                "LEFT JOIN pg_catalog.pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum\n" +
+                "WHERE n.nspname = ?\n" +
+                "AND c.relname IN ("+ChunkedQueryUtils.IN_PLACEHOLDER+")\n" +
+                "AND a.attnum > 0 AND NOT a.attisdropped\n" +
+                "ORDER BY n.nspname, c.relname, a.attnum";
+    }
+
+    /**
+     * 每个索引按 indnkeyatts 展开成多行，表达式索引的字段取 pg_get_indexdef 的表达式文本；
+     * 主键统一命名为 PRIMARY，与 MySQL 保持一致
+     */
+    @Override
+    protected String indexSql() {
+        return "SELECT \n" +
+                "\tn.nspname AS TABLE_SCHEMA,\n" +
+                "\tt.relname AS TABLE_NAME,\n" +
+                "\tCASE WHEN ix.indisprimary THEN 'PRIMARY KEY' WHEN ix.indisunique THEN 'UNIQUE' END AS CONSTRAINT_TYPE,\n" +
+                "\tCASE WHEN ix.indisprimary THEN 'PRIMARY' ELSE i.relname END AS INDEX_NAME,\n" +
+                "\tk.seq AS SEQ_IN_INDEX,\n" +
+                "\tpg_get_indexdef(ix.indexrelid, k.seq, true) AS COLUMN_NAME,\n" +
+                "\tNULL AS SUB_PART,\n" +
+                "\tUPPER(am.amname) AS INDEX_TYPE,\n" +
+                "\tCOALESCE(obj_description(i.oid, 'pg_class'), '') AS INDEX_COMMENT\n" +
+                "FROM pg_catalog.pg_index ix\n" +
+                "INNER JOIN pg_catalog.pg_class t ON t.oid = ix.indrelid\n" +
+                "INNER JOIN pg_catalog.pg_class i ON i.oid = ix.indexrelid\n" +
+                "INNER JOIN pg_catalog.pg_namespace n ON n.oid = t.relnamespace\n" +
+                "INNER JOIN pg_catalog.pg_am am ON am.oid = i.relam\n" +
+                "CROSS JOIN LATERAL generate_series(1, ix.indnkeyatts) AS k(seq)\n" +
+                "WHERE n.nspname = ?\n" +
+                "AND t.relname IN ("+ChunkedQueryUtils.IN_PLACEHOLDER+")\n" +
+                "ORDER BY 1, 2, 4, 5";
+    }
+
+    /**
+     * 没有 CRC32，用 hashtext 计算每行的摘要；索引直接取 pg_get_indexdef 的完整定义
+     */
+    @Override
+    protected String structureChecksumSql() {
+        return "SELECT \n" +
+                "\tn.nspname AS TABLE_SCHEMA,\n" +
+                "\tc.relname AS TABLE_NAME,\n" +
+                "\t'C' AS ITEM_KIND,\n" +
+                "\tCOUNT(*) AS ITEM_COUNT,\n" +
+                "\tSUM(hashtext(concat_ws('|', a.attnum, a.attname, format_type(a.atttypid, a.atttypmod), a.attnotnull, d.adbin IS NULL,\n" +
+                "\t\tpg_get_expr(d.adbin, d.adrelid), col_description(c.oid, a.attnum), a.attidentity))) AS ITEM_CHECKSUM\n" +
+                "FROM pg_catalog.pg_attribute a\n" +
+                "INNER JOIN pg_catalog.pg_class c ON c.oid = a.attrelid\n" +
+                "INNER JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace\n" +
+                "LEFT JOIN pg_catalog.pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum\n" +
+                "WHERE n.nspname = ?\n" +
+                "AND c.relkind IN ('r', 'p') AND a.attnum > 0 AND NOT a.attisdropped\n" +
+                "GROUP BY n.nspname, c.relname\n" +
+                "UNION ALL\n" +
+                "SELECT \n" +
+                "\tn.nspname AS TABLE_SCHEMA,\n" +
+                "\tt.relname AS TABLE_NAME,\n" +
+                "\t'I' AS ITEM_KIND,\n" +
+                "\tCOUNT(*) AS ITEM_COUNT,\n" +
+                "\tSUM(hashtext(concat_ws('|', i.relname, pg_get_indexdef(ix.indexrelid), obj_description(i.oid, 'pg_class')))) AS ITEM_CHECKSUM\n" +
+                "FROM pg_catalog.pg_index ix\n" +
+                "INNER JOIN pg_catalog.pg_class t ON t.oid = ix.indrelid\n" +
+                "INNER JOIN pg_catalog.pg_class i ON i.oid = ix.indexrelid\n" +
+                "INNER JOIN pg_catalog.pg_namespace n ON n.oid = t.relnamespace\n" +
+                "WHERE n.nspname = ?\n" +
+                "GROUP BY n.nspname, t.relname";
+    }
+}
@@ -0,0 +1,168 @@
+package com.wind.compare.datasource.config;
+
+import com.wind.compare.datasource.diff.DiffSink;
+import com.wind.compare.datasource.diff.DiffStatement;
+import com.wind.compare.datasource.enums.DiffKind;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 导出、对比各阶段的指标(通过 /actuator/metrics 查看)
+ *   compare.extract.query      查询元数据的耗时(catalog = tables/checksums/columns/indexes/create_sql)，用来区分是数据库慢还是工具慢
+ *   compare.extract.rows       查询到的元数据行数
+ *   compare.diff               对比耗时
+ *   compare.diff.statements    生成的差异语句数量(kind = ALTER_TABLE/CREATE_TABLE)
+ *   compare.snapshot.write     快照序列化+加密+写出的耗时，compare.snapshot.bytes(op = write) 为加密后的字节数
+ *   compare.snapshot.read      快照读取+解密+解析的耗时，compare.snapshot.bytes(op = read) 为加密文件的字节数
+ * @author wind.tan
+ * @date 2024-05-26
+ */
+@Component
+public class CompareMetrics {
+
+    public static final String CATALOG_TABLES = "tables";
+    public static final String CATALOG_CHECKSUMS = "checksums";
+    public static final String CATALOG_COLUMNS = "columns";
+    public static final String CATALOG_INDEXES = "indexes";
+    public static final String CATALOG_CREATE_SQL = "create_sql";
+
+    private final MeterRegistry registry;
+
+    public CompareMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * 记录一次元数据查询
+     * @param sample    开始时间
+     * @param catalog   查询的元数据
+     * @param rows      行数
+     */
+    public void recordQuery(Timer.Sample sample, String catalog, long rows) {
+        sample.stop(Timer.builder("compare.extract.query").tag("catalog", catalog).register(registry));
+        Counter.builder("compare.extract.rows").tag("catalog", catalog).register(registry).increment(rows);
+    }
+
+    public void recordDiff(Timer.Sample sample) {
+        sample.stop(Timer.builder("compare.diff").register(registry));
+    }
+
+    /**
+     * 统计差异语句数量的 sink
+     * @param sink  实际的 sink
+     * @return
+     */
+    public DiffSink countStatements(DiffSink sink) {
+        Map<DiffKind, Counter> counterMap = new EnumMap<>(DiffKind.class);
+        for (DiffKind kind : DiffKind.values()) {
+            counterMap.put(kind, Counter.builder("compare.diff.statements").tag("kind", kind.name()).register(registry));
+        }
+        return new DiffSink() {
+            @Override
+            public void accept(DiffStatement statement) {
+                sink.accept(statement);
+                counterMap.get(statement.getKind()).increment();
+            }
+
+            @Override
+            public void flush() {
+                sink.flush();
+            }
+
+            @Override
+            public void progress(int processedTables, int totalTables) {
+                sink.progress(processedTables, totalTables);
+            }
+
+            @Override
+            public void finish() {
+                sink.finish();
+            }
+        };
+    }
+
+    /**
+     * 统计写出的快照：字节数按写入实时累加，关闭时记录耗时
+     * @param out   加密后的输出流
+     * @return
+     */
+    public OutputStream meterSnapshotWrite(OutputStream out) {
+        Counter bytes = Counter.builder("compare.snapshot.bytes").tag("op", "write").register(registry);
+        Timer timer = Timer.builder("compare.snapshot.write").register(registry);
+        Timer.Sample sample = start();
+        return new FilterOutputStream(out) {
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytes.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytes.increment(len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed){
+                    closed = true;
+                    sample.stop(timer);
+                }
+                super.close();
+            }
+        };
+    }
+
+    /**
+     * 统计读取的快照字节数(耗时由调用方在解析完成后记录)
+     * @param in    加密文件的输入流
+     * @return
+     */
+    public InputStream meterSnapshotRead(InputStream in) {
+        Counter bytes = Counter.builder("compare.snapshot.bytes").tag("op", "read").register(registry);
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0){
+                    bytes.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = in.read(b, off, len);
+                if (n > 0){
+                    bytes.increment(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    public void recordSnapshotRead(Timer.Sample sample) {
+        sample.stop(Timer.builder("compare.snapshot.read").register(registry));
+    }
+}
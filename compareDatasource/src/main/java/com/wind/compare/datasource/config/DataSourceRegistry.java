@@ -0,0 +1,242 @@
+package com.wind.compare.datasource.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.crypto.SecureUtil;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多数据源连接池注册表
+ * 按 连接串+账号+密码 区分目标库，每个目标库一个 HikariCP 连接池，支持多线程并发获取；
+ * 长时间没有使用、没有租约且没有活跃连接的连接池会被定时回收
+ * 注：连接数、超时时间等是全局配置，所有目标库的连接池一致
+ * @author wind.tan
+ * @date 2024-05-20
+ */
+@Slf4j
+@Component
+public class DataSourceRegistry {
+
+    /**
+     * 单个目标库的最大连接数
+     */
+    @Value("${compare.datasource.pool.max-size:8}")
+    private int maxPoolSize;
+
+    /**
+     * 获取连接的最长等待时间：并发请求超过连接数时排队等待，而不是直接失败
+     */
+    @Value("${compare.datasource.pool.connection-timeout:1m}")
+    private Duration connectionTimeout;
+
+    /**
+     * 连接池内空闲连接的存活时间
+     */
+    @Value("${compare.datasource.pool.idle-timeout:5m}")
+    private Duration idleTimeout;
+
+    /**
+     * 整个连接池多久没被使用就关闭回收
+     */
+    @Value("${compare.datasource.pool.evict-after:30m}")
+    private Duration evictAfter;
+
+    /**
+     * 流式读取元数据时每次从服务端拉取的行数
+     */
+    @Value("${compare.extract.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * key(连接串_账号_密码摘要)、value(连接池)
+     */
+    private final Map<String, PooledTarget> targetMap = new ConcurrentHashMap<>();
+
+    /**
+     * 连接池序号，拼在连接池名里，保证同一 ip、端口下不同账号、库的连接池指标(hikaricp.*)不会混在一起
+     */
+    private final AtomicInteger poolSequence = new AtomicInteger();
+
+    private ScheduledExecutorService evictScheduler;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init(){
+        evictScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNamePrefix("datasourceEvict_").setDaemon(true).build());
+        long period = Math.max(evictAfter.toMillis() / 2, 1000L);
+        evictScheduler.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        evictScheduler.shutdownNow();
+        targetMap.values().forEach(target -> target.dataSource.close());
+        targetMap.clear();
+    }
+
+    /**
+     * 获取目标库对应的 JdbcTemplate，同一目标库复用同一个连接池
+     * 注：只适合用完即走的短操作；长时间使用(如整库抽取)要用 {@link #acquire}，否则连接池可能在两次查询之间被回收
+     * @param datasourceSetting 数据库配置
+     * @return
+     */
+    public JdbcTemplate getJdbcTemplate(DatasourceSettingDto datasourceSetting){
+        return lookup(datasourceSetting, false).jdbcTemplate;
+    }
+
+    /**
+     * 租用目标库的连接池：租约关闭之前连接池不会被回收
+     * @param datasourceSetting 数据库配置
+     * @return 租约(用完必须关闭，建议 try-with-resources)
+     */
+    public Lease acquire(DatasourceSettingDto datasourceSetting){
+        return new Lease(lookup(datasourceSetting, true));
+    }
+
+    /**
+     * 查找(不存在则新建)目标库的连接池
+     * @param datasourceSetting 数据库配置
+     * @param lease             是否同时占用一个租约
+     * @return
+     */
+    private PooledTarget lookup(DatasourceSettingDto datasourceSetting, boolean lease){
+        if (datasourceSetting.getDatasource() == null){
+            throw new IllegalArgumentException("不支持的数据库类型:" + datasourceSetting.getDatasourceType());
+        }
+        String url = datasourceSetting.getDatasource().getCatalogReader().jdbcUrl(datasourceSetting);
+        // 密码只以摘要形式参与key，避免明文驻留在key里
+        String key = url+"_"+datasourceSetting.getUsername()+"_"+SecureUtil.sha256(String.valueOf(datasourceSetting.getPassword()));
+        // compute 与回收时的 computeIfPresent 互斥，保证刚取到(租到)的连接池不会被同时回收
+        return targetMap.compute(key, (k, exist) -> {
+            PooledTarget ret = exist == null ? createTarget(datasourceSetting, url) : exist;
+            ret.lastAccess = System.currentTimeMillis();
+            if (lease){
+                ret.leaseCount.incrementAndGet();
+            }
+            return ret;
+        });
+    }
+
+    /**
+     * 单个目标库的最大连接数
+     * @return
+     */
+    public int getMaxPoolSize(){
+        return maxPoolSize;
+    }
+
+    /**
+     * 新建一个目标库的连接池(懒加载，首次获取连接时才真正建立连接)
+     */
+    private PooledTarget createTarget(DatasourceSettingDto datasourceSetting, String url){
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("compare_" + datasourceSetting.getIp() + "_" + datasourceSetting.getPort() + "_" + datasourceSetting.getUsername() + "_" + poolSequence.incrementAndGet());
+        config.setDriverClassName(datasourceSetting.getDatasource().getDatasourceDrive());
+        config.setJdbcUrl(url);
+        config.setUsername(datasourceSetting.getUsername());
+        config.setPassword(datasourceSetting.getPassword());
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(0);
+        config.setConnectionTimeout(connectionTimeout.toMillis());
+        config.setIdleTimeout(idleTimeout.toMillis());
+        config.setReadOnly(true);
+        // 创建时不校验连通性，和之前 DriverManagerDataSource 的行为保持一致
+        config.setInitializationFailTimeout(-1);
+        // 获取连接的等待时间、活跃连接数(hikaricp.*，pool 标签为连接池名)
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        HikariDataSource dataSource = new HikariDataSource(config);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        log.info("DataSourceRegistry.createTarget:{}", config.getPoolName());
+        return new PooledTarget(dataSource, jdbcTemplate);
+    }
+
+    /**
+     * 回收长时间未使用、没有租约且无活跃连接的连接池
+     */
+    private void evictIdle(){
+        long deadline = System.currentTimeMillis() - evictAfter.toMillis();
+        for (String key : targetMap.keySet()) {
+            PooledTarget[] evicted = new PooledTarget[1];
+            targetMap.computeIfPresent(key, (k, target) -> {
+                if (target.lastAccess > deadline || target.leaseCount.get() > 0){
+                    return target;
+                }
+                HikariPoolMXBean poolBean = target.dataSource.getHikariPoolMXBean();
+                if (poolBean != null && poolBean.getActiveConnections() > 0){
+                    return target;
+                }
+                evicted[0] = target;
+                return null;
+            });
+            if (evicted[0] != null){
+                log.info("DataSourceRegistry.evictIdle:{}", evicted[0].dataSource.getPoolName());
+                evicted[0].dataSource.close();
+            }
+        }
+    }
+
+    /**
+     * 单个目标库的连接池
+     */
+    private static class PooledTarget{
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private final AtomicInteger leaseCount = new AtomicInteger();
+
+        private PooledTarget(HikariDataSource dataSource, JdbcTemplate jdbcTemplate) {
+            this.dataSource = dataSource;
+            this.jdbcTemplate = jdbcTemplate;
+        }
+    }
+
+    /**
+     * 连接池租约：持有期间连接池不会被回收，关闭时归还并刷新最近使用时间
+     */
+    public static class Lease implements AutoCloseable{
+        private final PooledTarget target;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(PooledTarget target) {
+            this.target = target;
+        }
+
+        public JdbcTemplate getJdbcTemplate(){
+            return target.jdbcTemplate;
+        }
+
+        /**
+         * 归还租约，重复关闭只归还一次
+         */
+        @Override
+        public void close(){
+            if (released.compareAndSet(false, true)){
+                target.lastAccess = System.currentTimeMillis();
+                target.leaseCount.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.wind.compare.datasource.config;
+
+import com.wind.compare.datasource.diff.AsyncFileDiffListener;
+import com.wind.compare.datasource.diff.DiffListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * 差异事件日志：默认关闭(对比时不生成事件)，开启后异步写入文件
+ * @author wind.tan
+ * @date 2024-05-26
+ */
+@Slf4j
+@Configuration
+public class DiffListenerConfig {
+
+    @Bean
+    public DiffListener diffListener(@Value("${compare.diff.event-log.enabled:false}") boolean enabled,
+                                     @Value("${compare.diff.event-log.file:logs/diff-events.log}") String file,
+                                     @Value("${compare.diff.event-log.queue-size:10000}") int queueSize) throws IOException {
+        if (!enabled){
+            return DiffListener.NONE;
+        }
+        log.info("DiffListenerConfig.diffListener:差异事件写入 {}", Paths.get(file).toAbsolutePath());
+        return new AsyncFileDiffListener(Paths.get(file), queueSize);
+    }
+}
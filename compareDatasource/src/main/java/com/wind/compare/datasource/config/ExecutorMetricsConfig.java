@@ -0,0 +1,60 @@
+package com.wind.compare.datasource.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.wind.compare.datasource.config.ThreadPoolConfig.COMMON_POOL;
+import static com.wind.compare.datasource.config.ThreadPoolConfig.DIFF_POOL;
+import static com.wind.compare.datasource.config.ThreadPoolConfig.JOB_POOL;
+import static com.wind.compare.datasource.config.ThreadPoolConfig.SEARCH_SQL;
+
+/**
+ * 线程池指标：排队数、活跃线程数、完成任务数(executor.*，name 标签为线程池名)，以及拒绝次数(compare.executor.rejected)
+ * 虚拟线程模式下每个任务一个线程，不排队也不拒绝，没有这些指标
+ * @author wind.tan
+ * @date 2024-05-26
+ */
+@Configuration
+public class ExecutorMetricsConfig {
+
+    @Bean
+    public MeterBinder executorMetrics(@Qualifier(SEARCH_SQL) ExecutorService searchSql, @Qualifier(COMMON_POOL) ExecutorService commonPool,
+                                       @Qualifier(JOB_POOL) ThreadPoolExecutor jobPool, @Qualifier(DIFF_POOL) ForkJoinPool diffPool) {
+        return registry -> {
+            bind(registry, searchSql, SEARCH_SQL);
+            bind(registry, commonPool, COMMON_POOL);
+            bind(registry, jobPool, JOB_POOL);
+            bind(registry, diffPool, DIFF_POOL);
+        };
+    }
+
+    /**
+     * 绑定线程池指标，ThreadPoolExecutor 额外统计拒绝次数(仍交给原来的拒绝策略处理)
+     * @param registry  registry
+     * @param executor  线程池
+     * @param name      线程池名
+     */
+    public static void bind(MeterRegistry registry, ExecutorService executor, String name) {
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(registry);
+        if (executor instanceof ThreadPoolExecutor){
+            ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executor;
+            Counter rejected = Counter.builder("compare.executor.rejected").tag("name", name).register(registry);
+            RejectedExecutionHandler handler = threadPoolExecutor.getRejectedExecutionHandler();
+            threadPoolExecutor.setRejectedExecutionHandler((task, pool) -> {
+                rejected.increment();
+                handler.rejectedExecution(task, pool);
+            });
+        }
+    }
+}
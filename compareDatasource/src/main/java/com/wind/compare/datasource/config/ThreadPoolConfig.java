@@ -1,10 +1,19 @@
 package com.wind.compare.datasource.config;
 
 import cn.hutool.core.thread.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -19,31 +28,112 @@ import java.util.concurrent.TimeUnit;
  * 阻塞队列
  * 线程工程
  * 拒绝策略
+ *
+ * 查询数据库、通用线程池的任务基本都阻塞在JDBC上，按 compare.executor.mode 选择执行器：
+ * virtual  - 虚拟线程(JDK 21+)，每个任务一个线程，并发由目标库连接池的连接数限制
+ * platform - 弹性线程池，线程数上限可配置，超出的任务进入无界队列排队，不再拒绝
+ * auto     - 运行环境支持虚拟线程时用 virtual，否则用 platform
  */
+@Slf4j
 @Configuration
 public class ThreadPoolConfig {
 
     public final static String SEARCH_SQL = "searchSql";
     public final static String COMMON_POOL = "commonPool";
+    public final static String DIFF_POOL = "diffPool";
+    public final static String JOB_POOL = "jobPool";
+
+    /**
+     * 执行器模式：auto、virtual、platform
+     */
+    @Value("${compare.executor.mode:auto}")
+    private String executorMode;
+
+    /**
+     * platform 模式下线程空闲多久后回收
+     */
+    @Value("${compare.executor.keep-alive:1m}")
+    private Duration keepAlive;
 
     /**
      * 查询数据库的线程池
      */
     @Bean(SEARCH_SQL)
-    public ThreadPoolExecutor searchSql(){
-        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(4, 4, 1L, TimeUnit.MINUTES,
-                new ArrayBlockingQueue<>(20), new ThreadFactoryBuilder().setNamePrefix(SEARCH_SQL + "_").setDaemon(true).build(),
-                new ThreadPoolExecutor.AbortPolicy());
-        return threadPoolExecutor;
+    public ExecutorService searchSql(@Value("${compare.executor.search-sql.max-size:16}") int maxSize){
+        return newExecutor(SEARCH_SQL, maxSize);
     }
 
     /**
      * 非特定场景的通用线程池
      */
     @Bean(COMMON_POOL)
-    public ThreadPoolExecutor commonPool(){
-        return new ThreadPoolExecutor(4, 4, 1L, TimeUnit.MINUTES,
-                new ArrayBlockingQueue<>(20), new ThreadFactoryBuilder().setNamePrefix(COMMON_POOL+"_").setDaemon(true).build(),
+    public ExecutorService commonPool(@Value("${compare.executor.common.max-size:16}") int maxSize){
+        return newExecutor(COMMON_POOL, maxSize);
+    }
+
+    /**
+     * 表结构并行对比的线程池(ForkJoin，并发数默认为CPU核数)
+     */
+    @Bean(DIFF_POOL)
+    public ForkJoinPool diffPool(@Value("${compare.diff.parallelism:0}") int parallelism){
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 异步任务线程池：同时执行的任务数固定，超出的任务排队，排队数量也有上限
+     */
+    @Bean(JOB_POOL)
+    public ThreadPoolExecutor jobPool(@Value("${compare.job.max-concurrent:2}") int maxConcurrent, @Value("${compare.job.max-queued:50}") int maxQueued){
+        int size = Math.max(maxConcurrent, 1);
+        return new ThreadPoolExecutor(size, size, 1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(Math.max(maxQueued, 1)), new ThreadFactoryBuilder().setNamePrefix(JOB_POOL + "_").setDaemon(true).build(),
                 new ThreadPoolExecutor.AbortPolicy());
     }
+
+    /**
+     * 按执行器模式创建线程池
+     * @param name      线程池名称(线程名前缀)
+     * @param maxSize   platform 模式下的最大线程数
+     * @return
+     */
+    private ExecutorService newExecutor(String name, int maxSize) {
+        String mode = executorMode == null ? "auto" : executorMode.trim().toLowerCase();
+        if (!"platform".equals(mode)){
+            ExecutorService virtualExecutor = newVirtualThreadExecutor(name);
+            if (virtualExecutor != null){
+                log.info("ThreadPoolConfig.newExecutor:{} 使用虚拟线程", name);
+                return virtualExecutor;
+            }
+            if ("virtual".equals(mode)){
+                log.warn("ThreadPoolConfig.newExecutor:{} 当前JDK({})不支持虚拟线程，改用弹性线程池", name, Runtime.version());
+            }
+        }
+        int size = Math.max(maxSize, 1);
+        // 核心线程数=最大线程数 + 允许核心线程超时：任务多时先加线程，线程满了再排队，空闲时线程全部回收
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(size, size, keepAlive.toMillis(), TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setNamePrefix(name + "_").setDaemon(true).build());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        log.info("ThreadPoolConfig.newExecutor:{} 使用弹性线程池，最大线程数:{}", name, size);
+        return threadPoolExecutor;
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器(编译目标仍是 JDK 17)
+     * 等价于 Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "_", 0).factory())
+     * @param name  线程名前缀
+     * @return 不支持虚拟线程时返回空
+     */
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "_", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // JDK 19/20 未开启预览特性时 ofVirtual 会抛出 UnsupportedOperationException(包装在 InvocationTargetException 中)
+            return null;
+        }
+    }
 }
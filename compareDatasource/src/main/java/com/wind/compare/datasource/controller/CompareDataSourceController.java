@@ -1,14 +1,20 @@
 package com.wind.compare.datasource.controller;
 
-import cn.hutool.core.collection.CollectionUtil;
 import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.config.CompareMetrics;
+import com.wind.compare.datasource.diff.WriterDiffSink;
+import com.wind.compare.datasource.enums.SnapshotFormat;
 import com.wind.compare.datasource.response.Result;
 import com.wind.compare.datasource.service.CompareDataSourceService;
+import com.wind.compare.datasource.service.SnapshotStoreService;
 import com.wind.compare.datasource.utils.AESUtils;
 import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
 import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
 import com.wind.compare.datasource.pojo.vo.DatasourceSettingVo;
+import com.wind.compare.datasource.pojo.vo.LiveCompareVo;
 import com.wind.compare.datasource.utils.FileUtils;
+import com.wind.compare.datasource.utils.ScopeFilter;
+import com.wind.compare.datasource.utils.SnapshotUtils;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -23,14 +29,16 @@ import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
 import java.util.InvalidPropertiesFormatException;
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 
 import static com.wind.compare.datasource.config.ThreadPoolConfig.COMMON_POOL;
 
@@ -46,12 +54,30 @@ public class CompareDataSourceController {
     @Resource
     private CompareDataSourceService compareDataSourceService;
 
+    @Resource
+    private SnapshotStoreService snapshotStoreService;
+
+    @Resource
+    private CompareMetrics compareMetrics;
+
     @Resource(name = COMMON_POOL)
-    private ThreadPoolExecutor commonThreadPool;
+    private ExecutorService commonThreadPool;
 
     @Value("default.project.aes.password")
     private String AES_PASSWORD;
 
+    /**
+     * 导出快照的格式：json(旧版本也能解析)、binary(体积小、解析快)
+     */
+    @Value("${compare.snapshot.format:json}")
+    private String snapshotFormat;
+
+    /**
+     * 二进制快照是否压缩
+     */
+    @Value("${compare.snapshot.compress:true}")
+    private boolean snapshotCompress;
+
     /**
      * 验证接口连通性
      * @return  成功返回true
@@ -72,7 +98,7 @@ public class CompareDataSourceController {
         try {
             compareDataSourceService.getDynamicsJdbcTemplate(datasourceSetting);
         }catch (Exception e){
-            String errorMsg = "无法连接数据库!请检查配置:"+JSON.toJSONString(datasourceSetting);
+            String errorMsg = "无法连接数据库!请检查配置:"+datasourceSetting.toLogString();
             log.error(errorMsg);
             return Result.error(errorMsg);
         }
@@ -93,12 +119,45 @@ public class CompareDataSourceController {
         DatasourceSettingDto datasourceSetting = DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo);
         SQLTableJSON sqlTableJson = compareDataSourceService.generateJsonTable(datasourceSetting);
 
-        // 2、加密文件
-        String fileName = "generateDatasource_" + System.currentTimeMillis() + ".txt";
-        List<String> decodeDataSource = Collections.singletonList(AESUtils.encode(JSON.toJSONString(sqlTableJson), AES_PASSWORD));
+        // 2、边加密边下载
+        downloadSnapshot(request, response, sqlTableJson);
+    }
+
+    /**
+     * 增量导出加密后的文本：上传上一次导出的文件，只重新查询有变化的表
+     * @param request   request
+     * @param response  response
+     * @param file      上一次导出的加密文件
+     * @param setting   加密的数据库配置
+     * @throws IOException
+     */
+    @PostMapping("/export/generateDataSourceIncremental")
+    public void getAllIncremental(HttpServletRequest request, HttpServletResponse response, @RequestPart("file") MultipartFile file, @RequestParam("setting") String setting) throws IOException, ExecutionException, InterruptedException {
+
+        // 1、解析上一次的快照，增量获取JSON对象
+        DatasourceSettingVo datasourceSettingVo = JSON.parseObject(AESUtils.decode(setting, AES_PASSWORD), DatasourceSettingVo.class);
+        SQLTableJSON previous = compareDataSourceService.getFromFile(file, AES_PASSWORD);
+        SQLTableJSON sqlTableJson = compareDataSourceService.generateJsonTable(DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo), previous);
 
-        // 3、下载封装
-        FileUtils.downloadFile(request, response, fileName, decodeDataSource);
+        // 2、边加密边下载
+        downloadSnapshot(request, response, sqlTableJson);
+    }
+
+    /**
+     * 快照序列化后直接写入加密流、加密流直接写入响应，不生成完整的JSON字符串和密文字符串
+     * 格式由 compare.snapshot.format 指定，上传时自动识别
+     * @param request       request
+     * @param response      response
+     * @param sqlTableJson  快照
+     * @throws UnsupportedEncodingException
+     */
+    private void downloadSnapshot(HttpServletRequest request, HttpServletResponse response, SQLTableJSON sqlTableJson) throws UnsupportedEncodingException {
+        String fileName = "generateDatasource_" + System.currentTimeMillis() + ".txt";
+        FileUtils.downloadFile(request, response, fileName, out -> {
+            try (OutputStream encryptOut = AESUtils.encryptOutputStream(compareMetrics.meterSnapshotWrite(out), AES_PASSWORD)){
+                SnapshotUtils.writeSnapshot(encryptOut, sqlTableJson, SnapshotFormat.getByName(snapshotFormat), snapshotCompress);
+            }
+        });
     }
 
     /**
@@ -122,11 +181,11 @@ public class CompareDataSourceController {
     @PostMapping("/export/compareDiffDataSource")
     public void compareDiffDataSource(HttpServletRequest request, HttpServletResponse response, @RequestPart("file") MultipartFile file, @RequestParam("setting") String setting) throws UnsupportedEncodingException, ExecutionException, InterruptedException {
         // 1、获取指定数据库的JSON对象 compare
+        DatasourceSettingVo datasourceSettingVo = JSON.parseObject(AESUtils.decode(setting, AES_PASSWORD), DatasourceSettingVo.class);
+        DatasourceSettingDto compareSetting = DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo);
         CompletableFuture<SQLTableJSON> compareFuture = CompletableFuture.supplyAsync(() -> {
-            DatasourceSettingVo datasourceSettingVo = JSON.parseObject(AESUtils.decode(setting, AES_PASSWORD), DatasourceSettingVo.class);
-            assert datasourceSettingVo != null;
             try {
-                return compareDataSourceService.generateJsonTable(DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo));
+                return compareDataSourceService.generateJsonTable(compareSetting);
             } catch (ExecutionException | InterruptedException e) {
                 throw new RuntimeException(e);
             }
@@ -144,14 +203,78 @@ public class CompareDataSourceController {
             throw new RuntimeException(e);
         });
 
-        // 3、获取差异化结果(base VS compare)
-        List<String> diffResult = compareDataSourceService.compareDiffDataSource(baseFuture.get(), compareFuture.get());
-        if (CollectionUtil.isEmpty(diffResult)){
-            diffResult = Collections.singletonList("两个数据库的表结构没有差异!!");
+        SQLTableJSON base = baseFuture.get();
+        SQLTableJSON compare = compareFuture.get();
+
+        // 3、基准按同样的范围过滤后，边对比边下载(base VS compare)
+        downloadDiff(request, response, ScopeFilter.of(compareSetting).apply(base), compare);
+    }
+
+    /**
+     * 以快照库中的快照为基准对比，不用上传基准文件(快照已缓存时也不用解密、解析)
+     * @param request       request
+     * @param response      response
+     * @param snapshotId    基准快照id
+     * @param setting       加密的数据库配置
+     * @throws IOException
+     */
+    @PostMapping("/export/compareDiffDataSourceBySnapshot")
+    public void compareDiffDataSourceBySnapshot(HttpServletRequest request, HttpServletResponse response, @RequestParam("snapshotId") String snapshotId, @RequestParam("setting") String setting) throws IOException, ExecutionException, InterruptedException {
+        SQLTableJSON base = snapshotStoreService.load(snapshotId);
+        if (base == null){
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "snapshot not found: " + snapshotId);
+            return;
         }
+        DatasourceSettingVo datasourceSettingVo = JSON.parseObject(AESUtils.decode(setting, AES_PASSWORD), DatasourceSettingVo.class);
+        DatasourceSettingDto compareSetting = DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo);
+        SQLTableJSON compare = compareDataSourceService.generateJsonTable(compareSetting);
+        // 缓存中的快照是共用的，过滤时不修改原对象
+        downloadDiff(request, response, ScopeFilter.of(compareSetting).apply(base), compare);
+    }
 
-        // 4、下载封装
+    /**
+     * 两个数据库都能直接连接时，同时抽取两边的表结构，直接对比(不经过导出、加密、上传、解析)
+     * @param request       request
+     * @param response      response
+     * @param liveCompareVo 基准库、待对比库的配置
+     * @throws IOException
+     */
+    @PostMapping("/export/compareLiveDataSource")
+    public void compareLiveDataSource(HttpServletRequest request, HttpServletResponse response, @RequestBody LiveCompareVo liveCompareVo) throws IOException, ExecutionException, InterruptedException {
+        DatasourceSettingDto baseSetting = DatasourceSettingDto.exchangeVoToDto(liveCompareVo.getBase());
+        DatasourceSettingDto compareSetting = DatasourceSettingDto.exchangeVoToDto(liveCompareVo.getCompare());
+        // 1、两边同时抽取
+        CompletableFuture<SQLTableJSON> baseFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return compareDataSourceService.generateJsonTable(baseSetting);
+            } catch (ExecutionException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, commonThreadPool);
+        SQLTableJSON compare = compareDataSourceService.generateJsonTable(compareSetting);
+        SQLTableJSON base = baseFuture.get();
+
+        // 2、基准按同样的范围过滤后，边对比边下载(base VS compare)
+        downloadDiff(request, response, ScopeFilter.of(compareSetting).apply(base), compare);
+    }
+
+    /**
+     * 边对比边下载，每生成一条DDL就写入响应
+     * @param request   request
+     * @param response  response
+     * @param base      基准库
+     * @param compare   对比库
+     * @throws UnsupportedEncodingException
+     */
+    private void downloadDiff(HttpServletRequest request, HttpServletResponse response, SQLTableJSON base, SQLTableJSON compare) throws UnsupportedEncodingException {
         String fileName = "compareDiffDataSource_" + System.currentTimeMillis() + ".txt";
-        FileUtils.downloadFile(request, response, fileName, diffResult);
+        FileUtils.downloadFile(request, response, fileName, out -> {
+            WriterDiffSink sink = new WriterDiffSink(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            if (compareDataSourceService.compareDiffDataSource(base, compare, sink) == 0){
+                sink.write("两个数据库的表结构没有差异!!");
+            }
+            sink.writeEnd();
+            sink.flush();
+        });
     }
 }
@@ -0,0 +1,152 @@
+package com.wind.compare.datasource.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.enums.JobStatus;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.pojo.job.CompareJob;
+import com.wind.compare.datasource.pojo.vo.DatasourceSettingVo;
+import com.wind.compare.datasource.pojo.vo.JobVo;
+import com.wind.compare.datasource.pojo.vo.LiveCompareVo;
+import com.wind.compare.datasource.response.Result;
+import com.wind.compare.datasource.service.JobService;
+import com.wind.compare.datasource.utils.AESUtils;
+import com.wind.compare.datasource.utils.FileUtils;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 异步任务接口：提交导出/对比后立即返回任务id，轮询进度，完成后下载结果
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+@Slf4j
+@RestController
+@RequestMapping("/compare/job")
+public class CompareJobController {
+
+    @Resource
+    private JobService jobService;
+
+    @Value("default.project.aes.password")
+    private String AES_PASSWORD;
+
+    /**
+     * 提交导出任务
+     * @param datasourceSettingVo   数据库配置
+     * @return  任务状态
+     */
+    @PostMapping("/export")
+    public Result<JobVo> submitExport(@RequestBody DatasourceSettingVo datasourceSettingVo) throws IOException {
+        try {
+            CompareJob job = jobService.submitExport(DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo), AES_PASSWORD);
+            return Result.ok(JobVo.exchangeJobToVo(job));
+        } catch (RejectedExecutionException e) {
+            log.warn(e.getMessage());
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 提交对比任务
+     * @param file      基准库的数据库表结构加密文件
+     * @param setting   加密的数据库配置
+     * @return  任务状态
+     */
+    @PostMapping("/compare")
+    public Result<JobVo> submitCompare(@RequestPart("file") MultipartFile file, @RequestParam("setting") String setting) throws IOException {
+        DatasourceSettingVo datasourceSettingVo = JSON.parseObject(AESUtils.decode(setting, AES_PASSWORD), DatasourceSettingVo.class);
+        try (InputStream in = file.getInputStream()){
+            CompareJob job = jobService.submitCompare(in, DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo), AES_PASSWORD);
+            return Result.ok(JobVo.exchangeJobToVo(job));
+        } catch (RejectedExecutionException e) {
+            log.warn(e.getMessage());
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 提交对比任务，以快照库中的快照为基准
+     * @param snapshotId    基准快照id
+     * @param setting       加密的数据库配置
+     * @return  任务状态
+     */
+    @PostMapping("/compareBySnapshot")
+    public Result<JobVo> submitCompareBySnapshot(@RequestParam("snapshotId") String snapshotId, @RequestParam("setting") String setting) throws IOException {
+        DatasourceSettingVo datasourceSettingVo = JSON.parseObject(AESUtils.decode(setting, AES_PASSWORD), DatasourceSettingVo.class);
+        try {
+            CompareJob job = jobService.submitCompare(snapshotId, DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo));
+            return Result.ok(JobVo.exchangeJobToVo(job));
+        } catch (RejectedExecutionException e) {
+            log.warn(e.getMessage());
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 提交对比任务，两个数据库同时抽取，直接对比
+     * @param liveCompareVo 基准库、待对比库的配置
+     * @return  任务状态
+     */
+    @PostMapping("/compareLive")
+    public Result<JobVo> submitLiveCompare(@RequestBody LiveCompareVo liveCompareVo) throws IOException {
+        try {
+            CompareJob job = jobService.submitLiveCompare(DatasourceSettingDto.exchangeVoToDto(liveCompareVo.getBase()), DatasourceSettingDto.exchangeVoToDto(liveCompareVo.getCompare()));
+            return Result.ok(JobVo.exchangeJobToVo(job));
+        } catch (RejectedExecutionException e) {
+            log.warn(e.getMessage());
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 查询任务状态、进度
+     * @param jobId 任务id
+     * @return  任务状态
+     */
+    @GetMapping("/{jobId}")
+    public Result<JobVo> getJob(@PathVariable("jobId") String jobId){
+        CompareJob job = jobService.getJob(jobId);
+        if (job == null){
+            return Result.error("任务不存在或已过期:" + jobId);
+        }
+        return Result.ok(JobVo.exchangeJobToVo(job));
+    }
+
+    /**
+     * 下载任务结果
+     * @param request   request
+     * @param response  response
+     * @param jobId     任务id
+     * @throws IOException
+     */
+    @GetMapping("/{jobId}/download")
+    public void download(HttpServletRequest request, HttpServletResponse response, @PathVariable("jobId") String jobId) throws IOException {
+        CompareJob job = jobService.getJob(jobId);
+        if (job == null){
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "job not found or expired");
+            return;
+        }
+        if (job.getStatus() != JobStatus.SUCCESS || job.getArtifact() == null){
+            response.sendError(HttpServletResponse.SC_CONFLICT, "job is " + job.getStatus());
+            return;
+        }
+        FileUtils.downloadFile(request, response, job.getFileName(), out -> Files.copy(job.getArtifact(), out));
+    }
+}
@@ -0,0 +1,87 @@
+package com.wind.compare.datasource.controller;
+
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.pojo.vo.DatasourceSettingVo;
+import com.wind.compare.datasource.pojo.vo.SnapshotVo;
+import com.wind.compare.datasource.response.Result;
+import com.wind.compare.datasource.service.CompareDataSourceService;
+import com.wind.compare.datasource.service.SnapshotStoreService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * 服务端快照库接口：保存基准快照后，对比时只传快照id
+ * @author wind.tan
+ * @date 2024-05-25
+ */
+@Slf4j
+@RestController
+@RequestMapping("/compare/snapshot")
+public class SnapshotController {
+
+    @Resource
+    private CompareDataSourceService compareDataSourceService;
+
+    @Resource
+    private SnapshotStoreService snapshotStoreService;
+
+    @Value("default.project.aes.password")
+    private String AES_PASSWORD;
+
+    /**
+     * 上传导出的加密文件，保存到快照库
+     * @param file  导出的加密文件
+     * @return  快照
+     */
+    @PostMapping("/upload")
+    public Result<SnapshotVo> upload(@RequestPart("file") MultipartFile file) throws IOException {
+        SQLTableJSON sqlTableJson = compareDataSourceService.getFromFile(file, AES_PASSWORD);
+        return Result.ok(SnapshotVo.exchangeManifestToVo(snapshotStoreService.save(sqlTableJson)));
+    }
+
+    /**
+     * 直接从数据库导出并保存到快照库
+     * @param datasourceSettingVo   数据库配置
+     * @return  快照
+     */
+    @PostMapping("/export")
+    public Result<SnapshotVo> export(@RequestBody DatasourceSettingVo datasourceSettingVo) throws IOException, ExecutionException, InterruptedException {
+        SQLTableJSON sqlTableJson = compareDataSourceService.generateJsonTable(DatasourceSettingDto.exchangeVoToDto(datasourceSettingVo));
+        return Result.ok(SnapshotVo.exchangeManifestToVo(snapshotStoreService.save(sqlTableJson)));
+    }
+
+    /**
+     * 快照列表
+     * @return  快照列表(按创建时间倒序)
+     */
+    @GetMapping("/list")
+    public Result<List<SnapshotVo>> list() throws IOException {
+        return Result.ok(snapshotStoreService.list().stream().map(SnapshotVo::exchangeManifestToVo).collect(Collectors.toList()));
+    }
+
+    /**
+     * 删除快照
+     * @param snapshotId    快照id
+     * @return  快照是否存在
+     */
+    @DeleteMapping("/{snapshotId}")
+    public Result<Boolean> delete(@PathVariable("snapshotId") String snapshotId) throws IOException {
+        return Result.ok(snapshotStoreService.delete(snapshotId));
+    }
+}
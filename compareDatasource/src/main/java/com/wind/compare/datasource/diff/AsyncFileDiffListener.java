@@ -0,0 +1,108 @@
+package com.wind.compare.datasource.diff;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把差异事件异步写入文件(每行一个JSON)
+ * 对比线程只把事件放入有界队列，由单独的写线程批量写盘；队列满时对比线程等待，事件不会丢失
+ * @author wind.tan
+ * @date 2024-05-26
+ */
+@Slf4j
+public class AsyncFileDiffListener implements DiffListener, Closeable {
+
+    /**
+     * 写线程每次最多取出的事件数
+     */
+    private static final int DRAIN_SIZE = 512;
+
+    private final BlockingQueue<TableDiffEvent> queue;
+    private final BufferedWriter writer;
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    /**
+     * @param file          事件文件(追加写入，目录不存在时自动创建)
+     * @param queueCapacity 队列容量
+     */
+    public AsyncFileDiffListener(Path file, int queueCapacity) throws IOException {
+        if (file.toAbsolutePath().getParent() != null){
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writerThread = new Thread(this::writeLoop, "diffEventWriter");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void onTableDiff(TableDiffEvent event) {
+        if (closed){
+            return;
+        }
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 写线程：有事件就批量取出写入，队列空闲时把缓冲区刷到磁盘
+     */
+    private void writeLoop() {
+        List<TableDiffEvent> batch = new ArrayList<>(DRAIN_SIZE);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                TableDiffEvent first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null){
+                    writer.flush();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DRAIN_SIZE - 1);
+                for (TableDiffEvent event : batch) {
+                    writer.write(JSON.toJSONString(event));
+                    writer.newLine();
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("AsyncFileDiffListener 写入失败，丢弃{}条事件", batch.size(), e);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 停止接收事件，等待队列中的事件全部写完后关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        // 不中断写线程(文件通道被中断会直接关闭)，最多等一个轮询周期
+        closed = true;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.wind.compare.datasource.diff;
+
+import cn.hutool.core.io.FileUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按预估代价拆分输出：轻量语句照常逐条输出，代价达到阈值的重型语句暂存(通常只有少数几张大表)，
+ * 全部对比完成后按代价从高到低统一追加在最后，便于安排在维护窗口执行
+ * @author wind.tan
+ * @date 2024-05-28
+ */
+public class CostSplitDiffSink implements DiffSink {
+
+    private final DiffSink sink;
+
+    /**
+     * 重型语句的阈值(预估字节数)
+     */
+    private final long heavyBytes;
+
+    private final List<DiffStatement> heavyList = new ArrayList<>();
+
+    public CostSplitDiffSink(DiffSink sink, long heavyBytes) {
+        this.sink = sink;
+        this.heavyBytes = heavyBytes;
+    }
+
+    @Override
+    public void accept(DiffStatement statement) {
+        if (statement.getCost() != null && statement.getCost().getBytes() >= heavyBytes){
+            heavyList.add(statement);
+            return;
+        }
+        sink.accept(statement);
+    }
+
+    @Override
+    public void flush() {
+        sink.flush();
+    }
+
+    @Override
+    public void progress(int processedTables, int totalTables) {
+        sink.progress(processedTables, totalTables);
+    }
+
+    @Override
+    public void finish() {
+        heavyList.sort(Comparator.comparingLong((DiffStatement statement) -> statement.getCost().getBytes()).reversed());
+        for (int i = 0; i < heavyList.size(); i++) {
+            DiffStatement statement = heavyList.get(i);
+            if (i == 0){
+                // 分隔说明写在第一条重型语句前面，不单独占一条语句
+                String header = "-- ==================== 以下为重型变更(预估 ≥ " + FileUtil.readableFileSize(heavyBytes) + ")，按代价从高到低排列，建议在维护窗口执行 ====================\n";
+                statement = new DiffStatement(statement.getSchemaName(), statement.getTableName(), statement.getKind(), header + statement.getSql(), statement.getCost());
+            }
+            sink.accept(statement);
+        }
+        heavyList.clear();
+        sink.flush();
+        sink.finish();
+    }
+}
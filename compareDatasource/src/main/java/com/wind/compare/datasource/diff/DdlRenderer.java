@@ -0,0 +1,308 @@
+package com.wind.compare.datasource.diff;
+
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.Table;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * DDL 渲染(MySQL 语法)
+ * 字段、索引、建表语句直接写入调用方提供的 Appendable(StringBuilder/Writer)，不产生中间字符串；
+ * 库名、表名、字段名、索引名加反引号，注释、字符串默认值按字符串字面量转义
+ * @author wind.tan
+ * @date 2024-05-27
+ */
+public final class DdlRenderer {
+
+    /**
+     * 不加引号原样输出的默认值：数字、NULL、时间函数、位值/十六进制值、括号表达式
+     */
+    private static final Pattern RAW_DEFAULT = Pattern.compile(
+            "[-+]?\\d+(\\.\\d+)?([eE][-+]?\\d+)?|NULL|(CURRENT_TIMESTAMP|NOW|LOCALTIME|LOCALTIMESTAMP|CURRENT_DATE|CURRENT_TIME)(\\(\\d*\\))?|[bB]'[01]*'|[xX]'[0-9a-fA-F]*'|\\(.*\\)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * MySQL 8 的 EXTRA 中表示"默认值是表达式"的标记，不是合法的DDL关键字
+     */
+    private static final String DEFAULT_GENERATED = "DEFAULT_GENERATED";
+
+    private static final String PRIMARY = "PRIMARY";
+
+    private DdlRenderer() {
+    }
+
+    /**
+     * 建表语句
+     * eg: CREATE TABLE `test`.`user` (\n  `id` bigint NOT NULL auto_increment COMMENT '主键',\n  PRIMARY KEY (`id`) USING BTREE\n) ENGINE=InnoDB ...;\n
+     * @param out           输出
+     * @param schemaName    库名
+     * @param table         表
+     * @throws IOException
+     */
+    public static void appendCreateTable(Appendable out, String schemaName, Table table) throws IOException {
+        out.append("CREATE TABLE ");
+        appendQualifiedName(out, schemaName, table.getTableName());
+        out.append(" (\n");
+        List<Column> columnList = nullToEmpty(table.getColumnList());
+        List<Index> indexList = nullToEmpty(table.getIndexList());
+        // 最后一个字段/索引后面不加逗号(没有索引时最后一个字段就是最后一行)
+        int remaining = columnList.size() + indexList.size();
+        for (Column column : columnList) {
+            appendColumn(out, column);
+            out.append(--remaining > 0 ? ",\n" : "\n");
+        }
+        for (Index index : indexList) {
+            appendIndex(out, index);
+            out.append(--remaining > 0 ? ",\n" : "\n");
+        }
+        out.append(')');
+        if (table.getTableEngine() != null){
+            out.append(" ENGINE=").append(table.getTableEngine());
+        }
+        out.append(" AUTO_INCREMENT=0");
+        if (table.getCharset() != null){
+            out.append(" DEFAULT CHARSET=").append(table.getCharset());
+        }
+        out.append(" COMMENT=");
+        appendStringLiteral(out, table.getTableComment());
+        out.append(";\n");
+    }
+
+    /**
+     * ALTER TABLE 表头
+     * @param out           输出
+     * @param schemaName    库名
+     * @param tableName     表名
+     * @throws IOException
+     */
+    public static void appendAlterTable(Appendable out, String schemaName, String tableName) throws IOException {
+        out.append("ALTER TABLE ");
+        appendQualifiedName(out, schemaName, tableName);
+        out.append('\n');
+    }
+
+    /**
+     * 字段片段
+     * eg:   `xingming` varchar(200) NOT NULL DEFAULT '' COMMENT '姓名'
+     * @param out       输出
+     * @param column    字段
+     * @throws IOException
+     */
+    public static void appendColumn(Appendable out, Column column) throws IOException {
+        boolean notNull = Boolean.FALSE.equals(column.getIsNullable());
+        String extra = column.getExtra();
+        out.append("  ");
+        appendIdentifier(out, column.getColumnName());
+        out.append(' ').append(column.getColumnType()).append(' ');
+        if (notNull){
+            out.append("NOT NULL ");
+        }
+        String columnDefault = column.getColumnDefault();
+        if (columnDefault != null){
+            out.append("DEFAULT ");
+            appendDefault(out, columnDefault, extra != null && extra.contains(DEFAULT_GENERATED));
+            out.append(' ');
+        } else if (!notNull){
+            out.append("DEFAULT NULL ");
+        }
+        appendExtra(out, extra);
+        out.append("COMMENT ");
+        appendStringLiteral(out, column.getColumnComment());
+    }
+
+    /**
+     * 索引片段
+     * eg:   UNIQUE KEY `uk_name` (`name`,`code`(10)) USING BTREE COMMENT '名称'
+     * @param out   输出
+     * @param index 索引
+     * @throws IOException
+     */
+    public static void appendIndex(Appendable out, Index index) throws IOException {
+        String constraintType = index.getConstraintType();
+        String indexType = index.getIndexType();
+        // 全文、空间索引的类型写在前面，不能写 USING
+        boolean prefixType = "FULLTEXT".equalsIgnoreCase(indexType) || "SPATIAL".equalsIgnoreCase(indexType);
+        out.append("  ");
+        if (isPrimary(index)){
+            out.append("PRIMARY KEY ");
+        } else {
+            if (constraintType != null){
+                out.append(constraintType).append(constraintType.contains("KEY") ? " " : " KEY ");
+            } else if (prefixType){
+                out.append(indexType).append(" KEY ");
+            } else {
+                out.append("KEY ");
+            }
+            appendIdentifier(out, index.getIndexName());
+            out.append(' ');
+        }
+        out.append('(');
+        List<String> indexColumnList = nullToEmpty(index.getIndexColumnList());
+        for (int i = 0; i < indexColumnList.size(); i++) {
+            if (i > 0){
+                out.append(',');
+            }
+            appendIndexColumn(out, indexColumnList.get(i));
+        }
+        out.append(')');
+        if (indexType != null && !prefixType){
+            out.append(" USING ").append(indexType);
+        }
+        if (index.getIndexComment() != null && !index.getIndexComment().trim().isEmpty()){
+            out.append(" COMMENT ");
+            appendStringLiteral(out, index.getIndexComment());
+        }
+    }
+
+    /**
+     * 删除索引片段(主键为 DROP PRIMARY KEY)
+     * @param out   输出
+     * @param index 索引
+     * @throws IOException
+     */
+    public static void appendDropIndex(Appendable out, Index index) throws IOException {
+        if (isPrimary(index)){
+            out.append("DROP PRIMARY KEY");
+            return;
+        }
+        out.append("DROP INDEX ");
+        appendIdentifier(out, index.getIndexName());
+    }
+
+    /**
+     * `库名`.`表名`
+     * @param out           输出
+     * @param schemaName    库名
+     * @param tableName     表名
+     * @throws IOException
+     */
+    public static void appendQualifiedName(Appendable out, String schemaName, String tableName) throws IOException {
+        appendIdentifier(out, schemaName);
+        out.append('.');
+        appendIdentifier(out, tableName);
+    }
+
+    /**
+     * 标识符加反引号，名称中的反引号转义为两个
+     * @param out   输出
+     * @param name  名称
+     * @throws IOException
+     */
+    public static void appendIdentifier(Appendable out, String name) throws IOException {
+        appendIdentifier(out, name, 0, name.length());
+    }
+
+    /**
+     * 字符串字面量，单引号、反斜杠转义，空值输出 ''
+     * @param out   输出
+     * @param value 值
+     * @throws IOException
+     */
+    public static void appendStringLiteral(Appendable out, String value) throws IOException {
+        out.append('\'');
+        if (value != null){
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c == '\''){
+                    out.append('\'');
+                } else if (c == '\\'){
+                    out.append('\\');
+                }
+                out.append(c);
+            }
+        }
+        out.append('\'');
+    }
+
+    private static void appendIdentifier(Appendable out, String name, int start, int end) throws IOException {
+        out.append('`');
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (c == '`'){
+                out.append('`');
+            }
+            out.append(c);
+        }
+        out.append('`');
+    }
+
+    /**
+     * 默认值：字面量加引号，函数/表达式原样输出(MySQL 8 的表达式默认值加括号)
+     */
+    private static void appendDefault(Appendable out, String columnDefault, boolean expression) throws IOException {
+        if (RAW_DEFAULT.matcher(columnDefault).matches()){
+            out.append(columnDefault);
+        } else if (expression){
+            out.append('(').append(columnDefault).append(')');
+        } else {
+            appendStringLiteral(out, columnDefault);
+        }
+    }
+
+    /**
+     * EXTRA(auto_increment、on update CURRENT_TIMESTAMP 等)，去掉 DEFAULT_GENERATED 标记
+     */
+    private static void appendExtra(Appendable out, String extra) throws IOException {
+        if (extra == null){
+            return;
+        }
+        int start = 0;
+        int end = extra.length();
+        int marker = extra.indexOf(DEFAULT_GENERATED);
+        if (marker >= 0){
+            // 标记只会出现在开头：DEFAULT_GENERATED [on update CURRENT_TIMESTAMP]
+            start = marker + DEFAULT_GENERATED.length();
+        }
+        while (start < end && extra.charAt(start) == ' '){
+            start++;
+        }
+        while (end > start && extra.charAt(end - 1) == ' '){
+            end--;
+        }
+        if (start < end){
+            out.append(extra, start, end).append(' ');
+        }
+    }
+
+    /**
+     * 索引字段：字段名加反引号，保留前缀长度【eg：name(10) ==> `name`(10)】，表达式原样输出
+     */
+    private static void appendIndexColumn(Appendable out, String indexColumn) throws IOException {
+        int paren = indexColumn.indexOf('(');
+        if (paren < 0){
+            appendIdentifier(out, indexColumn);
+            return;
+        }
+        if (paren > 0 && indexColumn.endsWith(")") && isDigits(indexColumn, paren + 1, indexColumn.length() - 1)){
+            appendIdentifier(out, indexColumn, 0, paren);
+            out.append(indexColumn, paren, indexColumn.length());
+            return;
+        }
+        out.append(indexColumn);
+    }
+
+    private static boolean isDigits(String value, int start, int end) {
+        if (start >= end){
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(value.charAt(i))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPrimary(Index index) {
+        return PRIMARY.equals(index.getIndexName()) || "PRIMARY KEY".equals(index.getConstraintType());
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+}
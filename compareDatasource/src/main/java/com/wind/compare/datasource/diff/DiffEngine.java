@@ -0,0 +1,681 @@
+package com.wind.compare.datasource.diff;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjectUtil;
+import com.wind.compare.datasource.enums.AlterCostLevel;
+import com.wind.compare.datasource.enums.DiffKind;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 表结构差异对比引擎
+ * 库、表都按名称排序后再对比，同样的输入每次生成的DDL顺序都一样；
+ * 传入 ForkJoinPool 时各个库、库内各张表并行对比(结果仍按排序后的顺序合并)；
+ * 库、表的结构指纹相同时直接跳过，绝大多数表没有差异时几乎没有对比开销；
+ * 结果逐条交给 DiffSink，不在内存中累积全部DDL
+ * @author wind.tan
+ * @date 2024-05-22
+ */
+@Slf4j
+public class DiffEngine {
+
+    /**
+     * 并行对比使用的线程池，为空时在当前线程串行对比
+     */
+    private final ForkJoinPool diffPool;
+
+    /**
+     * 每个线程复用的对比临时结构，避免每张表都新建 Map/Set/List
+     */
+    private static final ThreadLocal<DiffScratch> SCRATCH = ThreadLocal.withInitial(DiffScratch::new);
+
+    /**
+     * 默认窗口大小
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 512;
+
+    /**
+     * 并行对比时每个窗口的表数量：窗口内并行对比，窗口之间按顺序输出，内存中最多只保留一个窗口的结果
+     */
+    private final int windowSize;
+
+    /**
+     * 差异事件监听器，NONE 时不生成事件
+     */
+    private final DiffListener listener;
+
+    /**
+     * 默认的改名检测最低置信度(大于1，默认关闭)
+     */
+    public static final double DEFAULT_RENAME_MIN_CONFIDENCE = 2;
+
+    /**
+     * 改名检测的最低置信度，达到后在新建表/新增字段语句前面以注释给出改名建议；大于1时关闭改名检测
+     */
+    private final double renameMinConfidence;
+
+    public DiffEngine(ForkJoinPool diffPool) {
+        this(diffPool, DEFAULT_WINDOW_SIZE);
+    }
+
+    public DiffEngine(ForkJoinPool diffPool, int windowSize) {
+        this(diffPool, windowSize, DiffListener.NONE);
+    }
+
+    public DiffEngine(ForkJoinPool diffPool, int windowSize, DiffListener listener) {
+        this(diffPool, windowSize, listener, DEFAULT_RENAME_MIN_CONFIDENCE);
+    }
+
+    public DiffEngine(ForkJoinPool diffPool, int windowSize, DiffListener listener, double renameMinConfidence) {
+        this.diffPool = diffPool;
+        this.renameMinConfidence = renameMinConfidence;
+        this.windowSize = Math.max(windowSize, 1);
+        this.listener = listener == null ? DiffListener.NONE : listener;
+    }
+
+    /**
+     * 对比两个连接的表结构差异
+     * @param base      基本连接
+     * @param compare   对比连接
+     * @return 可执行SQL
+     */
+    public List<String> compareDiffDataSource(SQLTableJSON base, SQLTableJSON compare) {
+        if (ObjectUtil.isNotNull(base) && CollectionUtil.isEmpty(base.getSchemaMap())){
+            log.info("传入的基准数据库没有数据，不用对比");
+            return null;
+        }
+        List<String> retList = new ArrayList<>();
+        compareDiffDataSource(base, compare, statement -> retList.add(statement.getSql()));
+        return retList;
+    }
+
+    /**
+     * 对比两个连接的表结构差异，每生成一条语句就交给 sink
+     * @param base      基本连接
+     * @param compare   对比连接
+     * @param sink      差异语句接收器
+     * @return 生成的语句数量
+     */
+    public int compareDiffDataSource(SQLTableJSON base, SQLTableJSON compare, DiffSink sink) {
+        if (ObjectUtil.isNull(base) || ObjectUtil.isNull(compare)){
+            throw new IllegalArgumentException("数据库连接JSON对象为空!");
+        }
+        Map<String, Schema> schemaMapBase = base.getSchemaMap();
+        Map<String, Schema> schemaMapCompare = compare.getSchemaMap();
+        if (CollectionUtil.isEmpty(schemaMapBase)){
+            log.info("传入的基准数据库没有数据，不用对比");
+            return 0;
+        }
+        if (CollectionUtil.isEmpty(schemaMapCompare)){
+            log.info("当前数据库没有库，直接返回基准库:{}", base.getConnectionAlias());
+        }
+        /**
+         * 找出交集、差集(baseSchemaKeys有，compareSchemaKeys无)，交集在前、差集在后，各自按库名排序
+         */
+        Map<String, Schema> compareMap = CollectionUtil.isEmpty(schemaMapCompare) ? Collections.emptyMap() : schemaMapCompare;
+        List<String> schemaNameList = schemaMapBase.keySet().stream()
+                .sorted(Comparator.comparing((String schemaName) -> !compareMap.containsKey(schemaName)).thenComparing(Comparator.naturalOrder()))
+                .collect(Collectors.toList());
+        // 只收集待对比的表(引用)，按输出顺序排列
+        List<DiffTask> taskList = new ArrayList<>();
+        for (String schemaName : schemaNameList) {
+            collectDiffTasks(schemaName, schemaMapBase.get(schemaName), compareMap.get(schemaName), taskList);
+        }
+        // 开启监听时才生成事件
+        DiffRun run = listener == DiffListener.NONE ? null : new DiffRun(IdUtil.fastSimpleUUID(), base.getConnectionAlias(), compare.getConnectionAlias());
+        // 按窗口对比、按顺序输出
+        int count = 0;
+        for (int from = 0; from < taskList.size(); from += windowSize) {
+            List<DiffTask> window = taskList.subList(from, Math.min(from + windowSize, taskList.size()));
+            List<DiffResult> resultList = runInPool(() -> stream(window).map(task -> diff(task, run)).collect(Collectors.toList()));
+            for (DiffResult result : resultList) {
+                if (result != null){
+                    sink.accept(result.statement);
+                    if (result.event != null){
+                        listener.onTableDiff(result.event);
+                    }
+                    count++;
+                }
+            }
+            sink.flush();
+            sink.progress(from + window.size(), taskList.size());
+        }
+        sink.finish();
+        return count;
+    }
+
+    /**
+     * 收集同一个库中需要对比/新建的表：交集表在前、差集表在后，各自按表名排序
+     * @param schemaName    库名
+     * @param schemaBase    基准库
+     * @param schemaCompare 待对比库(为空表示当前连接没有这个库)
+     * @param taskList      待对比的表
+     */
+    private void collectDiffTasks(String schemaName, Schema schemaBase, Schema schemaCompare, List<DiffTask> taskList) {
+        Map<String, Table> tableMapBase = schemaBase.getTableMap();
+        // 差集(baseSchemaKeys有，compareSchemaKeys无) - 直接新建
+        if (schemaCompare == null){
+            if (CollectionUtil.isNotEmpty(tableMapBase)){
+                sortTables(tableMapBase.values()).forEach(table -> taskList.add(new DiffTask(schemaName, table, null, null)));
+            }
+            return;
+        }
+        // 库指纹相同(全部表名、表结构都一样)，整个库直接跳过
+        if (FingerprintUtils.same(schemaBase.getFingerprint(), schemaCompare.getFingerprint())){
+            return;
+        }
+        Map<String, Table> tableMapCompare = schemaCompare.getTableMap();
+        // 基准库下无表，不用对比，直接跳过
+        if (CollectionUtil.isEmpty(tableMapBase)){
+            log.info("库交集-基准库"+schemaName+"下无表，不用对比，直接跳过");
+            return;
+        }
+        // 当前库无表，直接取基准库的表
+        if (CollectionUtil.isEmpty(tableMapCompare)){
+            log.info("库交集-当前库"+schemaName+"无表，直接取基准库的表");
+            sortTables(tableMapBase.values()).forEach(table -> taskList.add(new DiffTask(schemaName, table, null, null)));
+            return;
+        }
+        // 继续找交集、差集
+        // 交集(tableMapBase有，tableKeysCompare也有。但里面表字段/索引不一定一样)
+        tableMapBase.keySet().stream().filter(tableMapCompare::containsKey).sorted().forEach(tableName -> {
+            Table tableBase = tableMapBase.get(tableName);
+            Table tableCompare = tableMapCompare.get(tableName);
+            if (StringUtils.isBlank(tableBase.getTableName()) || StringUtils.isBlank(tableCompare.getTableName())){
+                return;
+            }
+            // 表指纹相同即字段、索引都一样，不用再逐个对比；两边原生建表语句的摘要相同也直接跳过(摘要不同不代表有差异)
+            if (FingerprintUtils.same(tableBase.getFingerprint(), tableCompare.getFingerprint())
+                    || hasCreateSql(tableBase) && hasCreateSql(tableCompare) && tableBase.getCreateSqlHash().equals(tableCompare.getCreateSqlHash())){
+                return;
+            }
+            taskList.add(new DiffTask(schemaName, tableBase, tableCompare, null));
+        });
+        // 差集(tableMapBase有，tableKeysCompare无) - 直接新建；与当前库多余的表结构一致时附带改名建议
+        List<Table> diffTableList = tableMapBase.values().stream().filter(table -> !tableMapCompare.containsKey(table.getTableName())).collect(Collectors.toList());
+        Map<String, RenameCandidate> tableRenameMap = Collections.emptyMap();
+        if (renameMinConfidence <= 1 && !diffTableList.isEmpty()){
+            List<Table> extraTableList = tableMapCompare.values().stream().filter(table -> !tableMapBase.containsKey(table.getTableName())).collect(Collectors.toList());
+            tableRenameMap = RenameDetector.detectTables(diffTableList, extraTableList, renameMinConfidence);
+        }
+        for (Table table : sortTables(diffTableList)) {
+            RenameCandidate rename = tableRenameMap.get(table.getTableName());
+            taskList.add(new DiffTask(schemaName, table, null, rename));
+        }
+    }
+
+    /**
+     * 对比一张表：待对比表为空时生成建表语句
+     * @param task  待对比的表
+     * @param run   本次对比(为空表示不生成事件)
+     * @return 没有差异时返回空
+     */
+    private DiffResult diff(DiffTask task, DiffRun run) {
+        String tableName = task.tableBase.getTableName();
+        if (task.tableCompare == null){
+            TableDiffEvent event = run == null ? null : run.newEvent(task.schemaName, tableName, DiffKind.CREATE_TABLE);
+            if (event != null){
+                nullToEmpty(task.tableBase.getColumnList()).forEach(column -> event.getAddedColumns().add(column.getColumnName()));
+                nullToEmpty(task.tableBase.getIndexList()).forEach(index -> event.getAddedIndexes().add(index.getIndexName()));
+                event.setRenamedTable(task.rename);
+            }
+            String sql = hasCreateSql(task.tableBase) ? qualifyCreateSql(task.schemaName, task.tableBase.getCreateSql()) : exchangeToCreateTableSql(task.schemaName, task.tableBase);
+            if (task.rename != null){
+                sql = renameTableSuggestion(task.schemaName, task.rename) + sql;
+            }
+            return new DiffResult(new DiffStatement(task.schemaName, tableName, DiffKind.CREATE_TABLE, sql), event);
+        }
+        // 对比不同库，同一个表的差异(字段/索引)
+        TableDiffEvent event = run == null ? null : run.newEvent(task.schemaName, tableName, DiffKind.ALTER_TABLE);
+        TableAlter alter = compareDiffTable(task.tableBase, task.tableCompare, task.schemaName, event);
+        if (alter == null){
+            return null;
+        }
+        // 按当前库这张表的大小估算变更代价，写在语句前面
+        String sql = alter.sql;
+        MigrationCost cost = MigrationCost.estimate(alter.costLevel, task.tableCompare);
+        if (cost != null){
+            sql = cost.toComment() + sql;
+        }
+        return new DiffResult(new DiffStatement(task.schemaName, tableName, DiffKind.ALTER_TABLE, sql, cost), event);
+    }
+
+    /**
+     * 表改名建议(表指纹相同，改名后不需要再修改字段、索引)，整段是注释，确认后人工代替建表语句执行
+     * @param schemaName    库名
+     * @param rename        改名
+     * @return
+     */
+    private static String renameTableSuggestion(String schemaName, RenameCandidate rename) {
+        StringBuilder builder = new StringBuilder(160);
+        try {
+            builder.append("-- 疑似表改名(置信度 ").append(rename.formatConfidence()).append(")，确认是改名时用下面的语句代替建表语句：\n-- RENAME TABLE ");
+            DdlRenderer.appendQualifiedName(builder, schemaName, rename.getOldName());
+            builder.append(" TO ");
+            DdlRenderer.appendQualifiedName(builder, schemaName, rename.getNewName());
+            builder.append(";\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    private static boolean hasCreateSql(Table table) {
+        return table.getCreateSql() != null && table.getCreateSqlHash() != null;
+    }
+
+    /**
+     * 原生建表语句补上库名【CREATE TABLE `t` ==> CREATE TABLE `schema`.`t`】
+     * @param schemaName    库名
+     * @param createSql     SHOW CREATE TABLE 的结果
+     * @return
+     */
+    private String qualifyCreateSql(String schemaName, String createSql) {
+        String prefix = "CREATE TABLE ";
+        String sql = createSql.startsWith(prefix)
+                ? prefix + "`" + schemaName.replace("`", "``") + "`." + createSql.substring(prefix.length())
+                : createSql;
+        return sql + ";\n";
+    }
+
+    /**
+     * 按表名排序
+     * @param tableList 表集合
+     * @return
+     */
+    private List<Table> sortTables(Collection<Table> tableList) {
+        return tableList.stream().sorted(Comparator.comparing(Table::getTableName)).collect(Collectors.toList());
+    }
+
+    /**
+     * 串行/并行流
+     * @param list  集合
+     * @return
+     */
+    private <T> Stream<T> stream(List<T> list) {
+        return diffPool == null ? list.stream() : list.parallelStream();
+    }
+
+    /**
+     * 在对比线程池中执行(并行流会使用当前所在的 ForkJoinPool)
+     * @param task  对比任务
+     * @return
+     */
+    private <T> T runInPool(Supplier<T> task) {
+        if (diffPool == null){
+            return task.get();
+        }
+        try {
+            return diffPool.submit(task::get).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("表结构对比被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("表结构对比失败", e.getCause());
+        }
+    }
+
+    /**
+     * 对比不同库，同一个表的差异(字段/索引)
+     * @param tableBase    基准表
+     * @param tableCompare 待对比表
+     * @param schemaName   库名
+     * @return  一张表的更新SQL
+     * eg:
+     * ALTER TABLE `test`.`peisongyuan_copy1`
+     * MODIFY COLUMN `addtime` `addtimes` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+     * ADD COLUMN `newcolumn` varchar(255) NULL COMMENT '测试字段',
+     * DROP INDEX `yonghuming`,
+     * ADD UNIQUE INDEX `yonghumings`(`yonghuming`) USING BTREE,
+     * ADD INDEX `idx_test`(`xingbie`) USING BTREE COMMENT '测试索引';
+     */
+    public String compareDiffTable(Table tableBase, Table tableCompare, String schemaName) {
+        TableAlter alter = compareDiffTable(tableBase, tableCompare, schemaName, null);
+        return alter == null ? null : alter.sql;
+    }
+
+    /**
+     * 对比同一个表的差异，同时把新增/修改的字段、索引名记录到事件中
+     * @param tableBase    基准表
+     * @param tableCompare 待对比表
+     * @param schemaName   库名
+     * @param event        差异事件(为空表示不记录)
+     * @return  一张表的更新SQL及变更代价等级，没有差异时返回空
+     */
+    private TableAlter compareDiffTable(Table tableBase, Table tableCompare, String schemaName, TableDiffEvent event) {
+        if (ObjectUtil.isNull(tableBase) || ObjectUtil.isNull(tableCompare)){
+            return null;
+        }
+        DiffScratch scratch = SCRATCH.get();
+        try {
+            StringBuilder resultSql = scratch.resultSql;
+            String tableName = tableBase.getTableName();
+            AlterCostLevel costLevel = AlterCostLevel.METADATA;
+            /**
+             * 对比字段：待对比表的字段放入复用的Map，再按基准表的字段顺序遍历
+             */
+            Map<String, Column> columnCompareMap = scratch.columnMap;
+            for (Column column : nullToEmpty(tableCompare.getColumnList())) {
+                columnCompareMap.put(column.getColumnName(), column);
+            }
+            List<Column> columnBaseList = nullToEmpty(tableBase.getColumnList());
+            // 新增字段与待对比表多余的字段结构一致时附带改名建议，key为新字段名
+            Map<String, RenameCandidate> columnRenameMap = renameMinConfidence > 1 ? Collections.emptyMap()
+                    : RenameDetector.detectColumns(columnBaseList, nullToEmpty(tableCompare.getColumnList()), columnCompareMap, renameMinConfidence);
+            // 交集 - 不相等时，更新字段 MODIFY COLUMN xxx
+            for (Column columnBase : columnBaseList) {
+                Column columnCompare = columnCompareMap.get(columnBase.getColumnName());
+                if (columnCompare != null && !columnBase.equals(columnCompare)){
+                    // 只改注释、默认值时只修改元数据，改类型、是否可为空要重建表
+                    if (!Objects.equals(columnBase.getColumnType(), columnCompare.getColumnType()) || !Objects.equals(columnBase.getIsNullable(), columnCompare.getIsNullable())){
+                        costLevel = AlterCostLevel.REBUILD;
+                    }
+                    appendClause(resultSql, schemaName, tableName).append("MODIFY COLUMN");
+                    DdlRenderer.appendColumn(resultSql, columnBase);
+                    if (event != null){
+                        event.getModifiedColumns().add(columnBase.getColumnName());
+                    }
+                }
+            }
+            // 差集 - 转换成 alter table xxx.xxx add column xxx
+            boolean hasFulltext = hasFulltextIndex(tableCompare);
+            for (Column columnBase : columnBaseList) {
+                if (!columnCompareMap.containsKey(columnBase.getColumnName())){
+                    costLevel = max(costLevel, addColumnCostLevel(columnBase, hasFulltext));
+                    appendClause(resultSql, schemaName, tableName).append("ADD COLUMN");
+                    DdlRenderer.appendColumn(resultSql, columnBase);
+                    if (event != null){
+                        event.getAddedColumns().add(columnBase.getColumnName());
+                    }
+                }
+            }
+
+            /**
+             * 对比索引
+             */
+            Map<String, Index> indexCompareMap = scratch.indexMap;
+            for (Index index : nullToEmpty(tableCompare.getIndexList())) {
+                indexCompareMap.put(index.getIndexName(), index);
+            }
+            List<Index> indexBaseList = nullToEmpty(tableBase.getIndexList());
+            // 交集 - 不相等时，更新索引 drop index xxx, add xxxDDL
+            for (Index indexBase : indexBaseList) {
+                Index indexCompare = indexCompareMap.get(indexBase.getIndexName());
+                if (indexCompare != null && !indexBase.equals(indexCompare)){
+                    costLevel = max(costLevel, indexCostLevel(indexBase));
+                    DdlRenderer.appendDropIndex(appendClause(resultSql, schemaName, tableName), indexBase);
+                    resultSql.append(",\nADD");
+                    DdlRenderer.appendIndex(resultSql, indexBase);
+                    if (event != null){
+                        event.getModifiedIndexes().add(indexBase.getIndexName());
+                    }
+                }
+            }
+            // 差集 - 转换成 alter table xxx.xxx add xxxDDL
+            for (Index indexBase : indexBaseList) {
+                if (!indexCompareMap.containsKey(indexBase.getIndexName())){
+                    costLevel = max(costLevel, indexCostLevel(indexBase));
+                    appendClause(resultSql, schemaName, tableName).append("ADD");
+                    DdlRenderer.appendIndex(resultSql, indexBase);
+                    if (event != null){
+                        event.getAddedIndexes().add(indexBase.getIndexName());
+                    }
+                }
+            }
+
+            /**
+             * 最后组装sql
+             */
+            if (resultSql.length() == 0){
+                return null;
+            }
+            resultSql.append(";\n");
+            // 改名是推断出来的，只以注释给出建议，语句中仍然新增字段
+            if (!columnRenameMap.isEmpty()){
+                StringBuilder note = new StringBuilder();
+                for (RenameCandidate rename : columnRenameMap.values()) {
+                    note.append("-- 疑似字段改名(置信度 ").append(rename.formatConfidence()).append(")，确认是改名时用下面的语句代替 ADD COLUMN ");
+                    DdlRenderer.appendIdentifier(note, rename.getNewName());
+                    note.append("：\n-- ALTER TABLE ");
+                    DdlRenderer.appendQualifiedName(note, schemaName, tableName);
+                    note.append(" RENAME COLUMN ");
+                    DdlRenderer.appendIdentifier(note, rename.getOldName());
+                    note.append(" TO ");
+                    DdlRenderer.appendIdentifier(note, rename.getNewName());
+                    note.append(";\n");
+                    if (event != null){
+                        event.getRenamedColumns().add(rename);
+                    }
+                }
+                resultSql.insert(0, note);
+            }
+            if (log.isDebugEnabled()){
+                log.debug("表字段对比结果:{}.{}\n{}", schemaName, tableName, resultSql);
+            }
+            return new TableAlter(resultSql.toString(), costLevel);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出
+            throw new UncheckedIOException(e);
+        } finally {
+            scratch.clear();
+        }
+    }
+
+    /**
+     * 追加一个 ALTER TABLE 子句：第一个子句前写表头，之后的子句前写分隔符
+     * @param resultSql     SQL缓冲区
+     * @param schemaName    库名
+     * @param tableName     表名
+     * @return
+     */
+    private StringBuilder appendClause(StringBuilder resultSql, String schemaName, String tableName) throws IOException {
+        if (resultSql.length() == 0){
+            DdlRenderer.appendAlterTable(resultSql, schemaName, tableName);
+            return resultSql;
+        }
+        return resultSql.append(",\n");
+    }
+
+    /**
+     * 新增字段的代价
+     * 生成的 ADD COLUMN 不带 FIRST/AFTER，字段总是追加在末尾，按 MySQL 8.0.12+ 的 INSTANT 算法只修改元数据；
+     * 自增列、存储生成列、有全文索引的表不支持 INSTANT，要重建表(MySQL 5.7 所有新增字段都要重建表，不单独区分)
+     * @param column        新增的字段
+     * @param hasFulltext   当前库这张表是否有全文索引
+     * @return
+     */
+    private static AlterCostLevel addColumnCostLevel(Column column, boolean hasFulltext) {
+        String extra = column.getExtra() == null ? "" : column.getExtra().toLowerCase();
+        if (hasFulltext || extra.contains("auto_increment") || extra.contains("stored")){
+            return AlterCostLevel.REBUILD;
+        }
+        return AlterCostLevel.METADATA;
+    }
+
+    private static boolean hasFulltextIndex(Table table) {
+        for (Index index : nullToEmpty(table.getIndexList())) {
+            if ("FULLTEXT".equalsIgnoreCase(index.getIndexType())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static AlterCostLevel max(AlterCostLevel level, AlterCostLevel other) {
+        return other.ordinal() > level.ordinal() ? other : level;
+    }
+
+    /**
+     * 新建/重建索引的代价：主键(聚簇索引)要重建表，二级索引要扫描全表
+     * @param index 索引
+     * @return
+     */
+    private static AlterCostLevel indexCostLevel(Index index) {
+        return "PRIMARY".equals(index.getIndexName()) || "PRIMARY KEY".equals(index.getConstraintType()) ? AlterCostLevel.REBUILD : AlterCostLevel.INDEX_BUILD;
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * 将表批量转换为DDL语句
+     * @param schemaName    库名
+     * @param tableList     表集合
+     * @return
+     */
+    public List<String> exchangeToNewTableDDL(String schemaName, Collection<Table> tableList){
+        List<String> tableDDLList = new ArrayList<>();
+        for (Table table : tableList) {
+            tableDDLList.add(exchangeToCreateTableSql(schemaName, table));
+        }
+        return tableDDLList;
+    }
+
+    /**
+     * 将一张表转换为建表语句(没有索引的表同样适用)
+     * 大批量生成时直接使用 DdlRenderer 写入 Writer，不经过中间字符串
+     * @param schemaName    库名
+     * @param table         表
+     * @return
+     */
+    public String exchangeToCreateTableSql(String schemaName, Table table){
+        StringBuilder builder = new StringBuilder(256);
+        try {
+            DdlRenderer.appendCreateTable(builder, schemaName, table);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 构建建表字段SQL
+     * @param column    字段对象
+     * @return  字段SQL[`xingming` varchar(200) NOT NULL COMMENT '姓名']
+     */
+    public String exchangeToColumnSql(Column column){
+        StringBuilder builder = new StringBuilder(64);
+        try {
+            DdlRenderer.appendColumn(builder, column);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 构建建表索引SQL
+     * @param index 索引对象
+     * @return  索引SQL[UNIQUE KEY `yonghuming` (`yonghuming`) USING BTREE]
+     */
+    public String exchangeToIndexSql(Index index){
+        StringBuilder builder = new StringBuilder(64);
+        try {
+            DdlRenderer.appendIndex(builder, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 一张待对比的表
+     */
+    @AllArgsConstructor
+    private static class DiffTask {
+        private final String schemaName;
+        private final Table tableBase;
+        /**
+         * 为空表示当前库没有这张表
+         */
+        private final Table tableCompare;
+        /**
+         * 不为空表示疑似表改名(只输出建议，仍然新建表)
+         */
+        private final RenameCandidate rename;
+    }
+
+    /**
+     * 一张表的 ALTER 语句及其变更代价等级
+     */
+    @AllArgsConstructor
+    private static class TableAlter {
+        private final String sql;
+        private final AlterCostLevel costLevel;
+    }
+
+    /**
+     * 一张表的对比结果
+     */
+    @AllArgsConstructor
+    private static class DiffResult {
+        private final DiffStatement statement;
+        /**
+         * 没有开启监听时为空
+         */
+        private final TableDiffEvent event;
+    }
+
+    /**
+     * 一次对比(开启监听时才创建)
+     */
+    @AllArgsConstructor
+    private static class DiffRun {
+        private final String runId;
+        private final String baseAlias;
+        private final String compareAlias;
+
+        TableDiffEvent newEvent(String schemaName, String tableName, DiffKind kind) {
+            return new TableDiffEvent(runId, baseAlias, compareAlias, schemaName, tableName, kind);
+        }
+    }
+
+    /**
+     * 单张表对比时复用的临时结构
+     */
+    private static class DiffScratch {
+        private final Map<String, Column> columnMap = new HashMap<>();
+        private final Map<String, Index> indexMap = new HashMap<>();
+        private final StringBuilder resultSql = new StringBuilder(1024);
+        /**
+         * 用完即清空，不持有快照对象的引用
+         */
+        private void clear() {
+            columnMap.clear();
+            indexMap.clear();
+            resultSql.setLength(0);
+            // 个别超大的表会把缓冲区撑大，超过阈值时重新分配
+            if (resultSql.capacity() > 64 * 1024){
+                resultSql.trimToSize();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.wind.compare.datasource.diff;
+
+/**
+ * 差异事件监听器：每张有差异的表产生一条结构化事件(新增/修改了哪些字段、索引)
+ * 事件按输出顺序在输出线程中依次回调；默认 NONE，对比时不会生成任何事件
+ * @author wind.tan
+ * @date 2024-05-26
+ */
+@FunctionalInterface
+public interface DiffListener {
+
+    /**
+     * 不监听
+     */
+    DiffListener NONE = event -> {
+    };
+
+    /**
+     * 一张表的差异事件
+     * @param event 事件
+     */
+    void onTableDiff(TableDiffEvent event);
+}
@@ -0,0 +1,37 @@
+package com.wind.compare.datasource.diff;
+
+/**
+ * 差异语句接收器：对比引擎每生成一条语句就交给接收器，不在内存中累积全部结果
+ * 语句按 库、表 排序后的顺序依次传入，并行对比时也一样
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@FunctionalInterface
+public interface DiffSink {
+
+    /**
+     * 接收一条差异语句
+     * @param statement 差异语句
+     */
+    void accept(DiffStatement statement);
+
+    /**
+     * 一批语句输出完成，可以把缓冲区的内容推给下游
+     */
+    default void flush() {
+    }
+
+    /**
+     * 对比进度，每批语句输出完成后汇报一次
+     * @param processedTables   已对比的表数量
+     * @param totalTables       需要对比的表总数(不含指纹相同直接跳过的表)
+     */
+    default void progress(int processedTables, int totalTables) {
+    }
+
+    /**
+     * 全部语句输出完成(最后一批 flush 之后调用一次)
+     */
+    default void finish() {
+    }
+}
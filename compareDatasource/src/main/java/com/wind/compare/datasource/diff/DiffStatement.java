@@ -0,0 +1,30 @@
+package com.wind.compare.datasource.diff;
+
+import com.wind.compare.datasource.enums.DiffKind;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一条差异语句(一张表对应一条)
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@Getter
+@AllArgsConstructor
+public class DiffStatement {
+    private String schemaName;
+    private String tableName;
+    private DiffKind kind;
+    /**
+     * 可执行SQL
+     */
+    private String sql;
+    /**
+     * 预估变更代价(没有采集表大小时为空)
+     */
+    private MigrationCost cost;
+
+    public DiffStatement(String schemaName, String tableName, DiffKind kind, String sql) {
+        this(schemaName, tableName, kind, sql, null);
+    }
+}
@@ -0,0 +1,57 @@
+package com.wind.compare.datasource.diff;
+
+import cn.hutool.core.io.FileUtil;
+import com.wind.compare.datasource.enums.AlterCostLevel;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一条差异语句的预估变更代价(根据导出时采集的表大小估算)
+ * @author wind.tan
+ * @date 2024-05-28
+ */
+@Getter
+@AllArgsConstructor
+public class MigrationCost {
+    private final AlterCostLevel level;
+    /**
+     * 预估需要扫描/重写的字节数
+     */
+    private final long bytes;
+    /**
+     * 表的估算行数
+     */
+    private final Long rows;
+
+    /**
+     * 按变更等级和待变更表的大小估算：重建表为 数据+索引，建索引为 数据，只改元数据为 0
+     * @param level 变更等级
+     * @param table 待变更的表(当前库的表)
+     * @return 没有采集表大小时返回空
+     */
+    public static MigrationCost estimate(AlterCostLevel level, Table table) {
+        if (table == null || table.getDataLength() == null){
+            return null;
+        }
+        long dataLength = table.getDataLength();
+        long indexLength = table.getIndexLength() == null ? 0 : table.getIndexLength();
+        long bytes = level == AlterCostLevel.REBUILD ? dataLength + indexLength : level == AlterCostLevel.INDEX_BUILD ? dataLength : 0;
+        return new MigrationCost(level, bytes, table.getTableRows());
+    }
+
+    /**
+     * 写在语句前面的注释
+     * @return eg: -- 预估代价：重建表，约 1.2 GB，约 3000000 行
+     */
+    public String toComment() {
+        StringBuilder builder = new StringBuilder("-- 预估代价：").append(level.getDescription());
+        if (level != AlterCostLevel.METADATA){
+            builder.append("，约 ").append(FileUtil.readableFileSize(bytes));
+        }
+        if (rows != null){
+            builder.append("，约 ").append(rows).append(" 行");
+        }
+        return builder.append('\n').toString();
+    }
+}
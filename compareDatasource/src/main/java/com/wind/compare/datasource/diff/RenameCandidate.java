@@ -0,0 +1,30 @@
+package com.wind.compare.datasource.diff;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * 一次改名(表或字段)：待对比库中的旧名称 ==> 基准库中的新名称
+ * @author wind.tan
+ * @date 2024-05-28
+ */
+@Getter
+@AllArgsConstructor
+public class RenameCandidate {
+    private final String oldName;
+    private final String newName;
+    /**
+     * 置信度(0~1)
+     */
+    private final double confidence;
+
+    /**
+     * 输出到DDL注释中的置信度
+     * @return eg: 0.90
+     */
+    public String formatConfidence() {
+        return String.format(Locale.ROOT, "%.2f", confidence);
+    }
+}
@@ -0,0 +1,201 @@
+package com.wind.compare.datasource.diff;
+
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 改名检测
+ * 基准库有、待对比库没有的对象(新增)与待对比库有、基准库没有的对象(多余)按结构签名建哈希索引匹配，
+ * 签名两边都唯一且注释相同(不为空)时才算候选，再按位置、名称相似度等计算置信度；
+ * 签名只覆盖结构，同结构的两张表/两个字段可能毫无关系，检测结果只作为建议，不生成可执行的改名语句；
+ * 表的签名为表指纹(全部字段、索引，不含表名)，字段的签名为 类型 + 是否可为空 + 默认值
+ * @author wind.tan
+ * @date 2024-05-28
+ */
+public final class RenameDetector {
+
+    /**
+     * 签名匹配的基础分(满分100，按整数累加避免浮点误差)
+     */
+    private static final int TABLE_SIGNATURE_SCORE = 70;
+    private static final int COLUMN_SIGNATURE_SCORE = 60;
+
+    /**
+     * 名称相似度达到该值时加分(表改名必须达到)
+     */
+    private static final double SIMILAR_NAME = 0.5;
+
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    private RenameDetector() {
+    }
+
+    /**
+     * 检测改名的表
+     * 名称去掉数字后相同的表(log_2023、log_2024 这种分表)结构天然一样，不算改名；
+     * 结构一样的表很常见(user_tag、customer_label)，注释相同且名称相似时才算候选
+     * @param addedTables   基准库有、待对比库没有的表
+     * @param droppedTables 待对比库有、基准库没有的表
+     * @param minConfidence 最低置信度
+     * @return key(新表名)、value(改名)
+     */
+    public static Map<String, RenameCandidate> detectTables(Collection<Table> addedTables, Collection<Table> droppedTables, double minConfidence) {
+        if (addedTables.isEmpty() || droppedTables.isEmpty()){
+            return Collections.emptyMap();
+        }
+        Map<Long, List<Table>> droppedIndex = new HashMap<>();
+        for (Table table : droppedTables) {
+            droppedIndex.computeIfAbsent(tableSignature(table), k -> new ArrayList<>(1)).add(table);
+        }
+        Map<Long, List<Table>> addedIndex = new HashMap<>();
+        for (Table table : addedTables) {
+            addedIndex.computeIfAbsent(tableSignature(table), k -> new ArrayList<>(1)).add(table);
+        }
+        Map<String, RenameCandidate> renameMap = new LinkedHashMap<>();
+        for (Map.Entry<Long, List<Table>> entry : addedIndex.entrySet()) {
+            List<Table> droppedList = droppedIndex.get(entry.getKey());
+            // 签名不唯一时无法判断是哪一张，不猜
+            if (entry.getValue().size() != 1 || droppedList == null || droppedList.size() != 1){
+                continue;
+            }
+            Table tableNew = entry.getValue().get(0);
+            Table tableOld = droppedList.get(0);
+            if (stripDigits(tableNew.getTableName()).equals(stripDigits(tableOld.getTableName()))){
+                continue;
+            }
+            if (!sameComment(tableNew.getTableComment(), tableOld.getTableComment())
+                    || nameSimilarity(tableNew.getTableName(), tableOld.getTableName()) < SIMILAR_NAME){
+                continue;
+            }
+            int score = TABLE_SIGNATURE_SCORE + 20
+                    + (Objects.equals(tableNew.getTableEngine(), tableOld.getTableEngine()) && Objects.equals(tableNew.getCharset(), tableOld.getCharset()) ? 10 : 0);
+            if (score >= minScore(minConfidence)){
+                renameMap.put(tableNew.getTableName(), new RenameCandidate(tableOld.getTableName(), tableNew.getTableName(), score / 100.0));
+            }
+        }
+        return renameMap;
+    }
+
+    /**
+     * 检测同一张表中改名的字段
+     * @param columnBaseList    基准表的字段
+     * @param columnCompareList 待对比表的字段
+     * @param columnCompareMap  待对比表的字段(key为字段名)
+     * @param minConfidence     最低置信度
+     * @return key(新字段名)、value(改名)
+     */
+    public static Map<String, RenameCandidate> detectColumns(List<Column> columnBaseList, List<Column> columnCompareList, Map<String, Column> columnCompareMap, double minConfidence) {
+        // 绝大多数表没有新增字段或没有多余字段，不分配任何结构直接返回
+        int added = 0;
+        for (Column column : columnBaseList) {
+            if (!columnCompareMap.containsKey(column.getColumnName())){
+                added++;
+            }
+        }
+        if (added == 0 || columnBaseList.size() - added >= columnCompareList.size()){
+            return Collections.emptyMap();
+        }
+        Set<String> baseNameSet = new HashSet<>();
+        columnBaseList.forEach(column -> baseNameSet.add(column.getColumnName()));
+        Map<List<Object>, List<Integer>> droppedIndex = new HashMap<>();
+        for (int i = 0; i < columnCompareList.size(); i++) {
+            if (!baseNameSet.contains(columnCompareList.get(i).getColumnName())){
+                droppedIndex.computeIfAbsent(columnSignature(columnCompareList.get(i)), k -> new ArrayList<>(1)).add(i);
+            }
+        }
+        Map<List<Object>, List<Integer>> addedIndex = new HashMap<>();
+        for (int i = 0; i < columnBaseList.size(); i++) {
+            if (!columnCompareMap.containsKey(columnBaseList.get(i).getColumnName())){
+                addedIndex.computeIfAbsent(columnSignature(columnBaseList.get(i)), k -> new ArrayList<>(1)).add(i);
+            }
+        }
+        Map<String, RenameCandidate> renameMap = new LinkedHashMap<>();
+        for (Map.Entry<List<Object>, List<Integer>> entry : addedIndex.entrySet()) {
+            List<Integer> droppedList = droppedIndex.get(entry.getKey());
+            if (entry.getValue().size() != 1 || droppedList == null || droppedList.size() != 1){
+                continue;
+            }
+            int newPosition = entry.getValue().get(0);
+            int oldPosition = droppedList.get(0);
+            Column columnNew = columnBaseList.get(newPosition);
+            Column columnOld = columnCompareList.get(oldPosition);
+            // 类型相同的字段很多(created_by、updated_by)，注释不同时不猜
+            if (!sameComment(columnNew.getColumnComment(), columnOld.getColumnComment())){
+                continue;
+            }
+            int score = COLUMN_SIGNATURE_SCORE + 20
+                    + (newPosition == oldPosition ? 10 : 0)
+                    + (nameSimilarity(columnNew.getColumnName(), columnOld.getColumnName()) >= SIMILAR_NAME ? 10 : 0);
+            if (score >= minScore(minConfidence)){
+                renameMap.put(columnNew.getColumnName(), new RenameCandidate(columnOld.getColumnName(), columnNew.getColumnName(), score / 100.0));
+            }
+        }
+        return renameMap;
+    }
+
+    /**
+     * 名称相似度(1 - 编辑距离/较长名称的长度，忽略大小写)
+     * @param name  名称
+     * @param other 另一个名称
+     * @return 0~1
+     */
+    public static double nameSimilarity(String name, String other) {
+        String a = name.toLowerCase();
+        String b = other.toLowerCase();
+        int maxLength = Math.max(a.length(), b.length());
+        if (maxLength == 0){
+            return 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1 - (double) previous[b.length()] / maxLength;
+    }
+
+    private static long minScore(double minConfidence) {
+        return Math.round(minConfidence * 100);
+    }
+
+    private static long tableSignature(Table table) {
+        return table.getFingerprint() != null ? table.getFingerprint() : FingerprintUtils.tableFingerprint(table);
+    }
+
+    private static List<Object> columnSignature(Column column) {
+        return Arrays.asList(column.getColumnType(), column.getIsNullable(), column.getColumnDefault());
+    }
+
+    private static boolean sameComment(String comment, String other) {
+        return StringUtils.isNotBlank(comment) && comment.equals(other);
+    }
+
+    private static String stripDigits(String name) {
+        return DIGITS.matcher(name).replaceAll("");
+    }
+}
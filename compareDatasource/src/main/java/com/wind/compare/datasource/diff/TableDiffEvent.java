@@ -0,0 +1,49 @@
+package com.wind.compare.datasource.diff;
+
+import com.wind.compare.datasource.enums.DiffKind;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单张表的差异事件(结构化记录，只有开启 DiffListener 时才会生成)
+ * @author wind.tan
+ * @date 2024-05-26
+ */
+@Getter
+public class TableDiffEvent {
+    /**
+     * 同一次对比的事件 runId 相同
+     */
+    private final String runId;
+    private final String baseAlias;
+    private final String compareAlias;
+    private final String schemaName;
+    private final String tableName;
+    private final DiffKind kind;
+    private final List<String> addedColumns = new ArrayList<>();
+    private final List<String> modifiedColumns = new ArrayList<>();
+    private final List<String> addedIndexes = new ArrayList<>();
+    private final List<String> modifiedIndexes = new ArrayList<>();
+    /**
+     * 疑似改名的字段(旧名称、新名称、置信度)，只是建议，语句中仍然新增字段
+     */
+    private final List<RenameCandidate> renamedColumns = new ArrayList<>();
+    /**
+     * 疑似改名的表(CREATE_TABLE 时才可能有)，只是建议，语句中仍然新建表
+     */
+    @Setter
+    private RenameCandidate renamedTable;
+    private final long timestamp = System.currentTimeMillis();
+
+    public TableDiffEvent(String runId, String baseAlias, String compareAlias, String schemaName, String tableName, DiffKind kind) {
+        this.runId = runId;
+        this.baseAlias = baseAlias;
+        this.compareAlias = compareAlias;
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.kind = kind;
+    }
+}
@@ -0,0 +1,61 @@
+package com.wind.compare.datasource.diff;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * 把差异语句逐条写入字符流(eg: 下载响应的输出流)
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+public class WriterDiffSink implements DiffSink {
+
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
+    /**
+     * 脚本结束标记：写在最后一行，没有这一行说明脚本不完整(eg: 下载中途断开)
+     */
+    public static final String END_OF_SCRIPT = "-- END OF SCRIPT";
+
+    private final Writer writer;
+
+    public WriterDiffSink(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void accept(DiffStatement statement) {
+        write(statement.getSql());
+    }
+
+    /**
+     * 写入一行内容
+     * @param content   内容
+     */
+    public void write(String content) {
+        try {
+            writer.write(content);
+            // SQL换行
+            writer.write(NEW_LINE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写入脚本结束标记，所有语句写完之后调用
+     */
+    public void writeEnd() {
+        write(END_OF_SCRIPT);
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
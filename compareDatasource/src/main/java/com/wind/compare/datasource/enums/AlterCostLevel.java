@@ -0,0 +1,33 @@
+package com.wind.compare.datasource.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 表结构变更的代价等级(按 InnoDB Online DDL 的最坏情况估算，从低到高排列)
+ * @author wind.tan
+ * @date 2024-05-28
+ */
+@Getter
+@AllArgsConstructor
+public enum AlterCostLevel {
+
+    /**
+     * 改名、改注释、改默认值、在末尾追加字段(MySQL 8.0.12+ 的 INSTANT)等，只修改元数据
+     */
+    METADATA("仅修改元数据"),
+    /**
+     * 新建/重建二级索引，需要扫描全表数据
+     */
+    INDEX_BUILD("扫描全表建索引"),
+    /**
+     * 修改字段类型/是否可为空、修改主键、新增自增/存储生成列、有全文索引的表新增字段，需要重建整张表
+     */
+    REBUILD("重建表"),
+    ;
+
+    /**
+     * 描述
+     */
+    private String description;
+}
@@ -1,5 +1,10 @@
 package com.wind.compare.datasource.enums;
 
+import com.wind.compare.datasource.catalog.CatalogReader;
+import com.wind.compare.datasource.catalog.H2CatalogReader;
+import com.wind.compare.datasource.catalog.MariaDbCatalogReader;
+import com.wind.compare.datasource.catalog.MySqlCatalogReader;
+import com.wind.compare.datasource.catalog.PostgreSqlCatalogReader;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -14,7 +19,19 @@ public enum DatasourceDriveType {
     /**
      * MySQL数据库驱动配置
      */
-    MYSQL("MYSQL","com.mysql.cj.jdbc.Driver"),
+    MYSQL("MYSQL","com.mysql.cj.jdbc.Driver", new MySqlCatalogReader()),
+    /**
+     * MariaDB数据库驱动配置
+     */
+    MARIADB("MARIADB","org.mariadb.jdbc.Driver", new MariaDbCatalogReader()),
+    /**
+     * PostgreSQL数据库驱动配置
+     */
+    POSTGRESQL("POSTGRESQL","org.postgresql.Driver", new PostgreSqlCatalogReader()),
+    /**
+     * H2数据库驱动配置(TCP Server 模式)
+     */
+    H2("H2","org.h2.Driver", new H2CatalogReader()),
     ;
 
     /**
@@ -25,6 +42,10 @@ public enum DatasourceDriveType {
      * 数据库驱动类
      */
     private String datasourceDrive;
+    /**
+     * 元数据读取器
+     */
+    private CatalogReader catalogReader;
 
     /**
      * 根据数据库类型获取对应的驱动
@@ -0,0 +1,29 @@
+package com.wind.compare.datasource.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 差异语句类型
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@Getter
+@AllArgsConstructor
+public enum DiffKind {
+
+    /**
+     * 两边都有的表，字段/索引不一致
+     */
+    ALTER_TABLE("修改表"),
+    /**
+     * 基准库有、当前库没有的表
+     */
+    CREATE_TABLE("新建表"),
+    ;
+
+    /**
+     * 描述
+     */
+    private String description;
+}
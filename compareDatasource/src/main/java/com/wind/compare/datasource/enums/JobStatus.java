@@ -0,0 +1,33 @@
+package com.wind.compare.datasource.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 异步任务状态
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+@Getter
+@AllArgsConstructor
+public enum JobStatus {
+
+    WAITING("排队中"),
+    RUNNING("执行中"),
+    SUCCESS("已完成"),
+    FAILED("失败"),
+    ;
+
+    /**
+     * 描述
+     */
+    private String description;
+
+    /**
+     * 是否已结束(成功或失败)
+     * @return
+     */
+    public boolean isFinished(){
+        return this == SUCCESS || this == FAILED;
+    }
+}
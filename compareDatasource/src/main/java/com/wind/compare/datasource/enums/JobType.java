@@ -0,0 +1,29 @@
+package com.wind.compare.datasource.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 异步任务类型
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+@Getter
+@AllArgsConstructor
+public enum JobType {
+
+    /**
+     * 导出加密后的表结构快照
+     */
+    EXPORT("导出表结构"),
+    /**
+     * 上传基准快照，与指定数据库对比并导出差异DDL
+     */
+    COMPARE("对比表结构"),
+    ;
+
+    /**
+     * 描述
+     */
+    private String description;
+}
@@ -0,0 +1,43 @@
+package com.wind.compare.datasource.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 快照文件格式(加密前的明文格式)
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+@Getter
+@AllArgsConstructor
+public enum SnapshotFormat {
+
+    /**
+     * fastjson 文本，旧版本只认这种格式
+     */
+    JSON("JSON文本"),
+    /**
+     * 带字符串字典的二进制格式，体积小、解析快
+     */
+    BINARY("二进制"),
+    ;
+
+    /**
+     * 描述
+     */
+    private String description;
+
+    /**
+     * 根据名称获取格式，不区分大小写，未知时返回 JSON
+     * @param name  格式名称
+     * @return
+     */
+    public static SnapshotFormat getByName(String name){
+        for (SnapshotFormat value : SnapshotFormat.values()) {
+            if (value.name().equalsIgnoreCase(name)){
+                return value;
+            }
+        }
+        return JSON;
+    }
+}
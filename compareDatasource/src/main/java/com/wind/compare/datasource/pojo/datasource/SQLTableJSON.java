@@ -5,6 +5,7 @@ import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
 import lombok.Data;
 
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * 整个数据库连接对象-JSON形式
@@ -112,11 +113,24 @@ public class SQLTableJSON {
         return this;
     }
 
+    /**
+     * 是否与另一个快照来自同一个数据库连接(ip、端口相同)
+     * @param other 另一个快照
+     * @return
+     */
+    public boolean isSameConnection(SQLTableJSON other) {
+        if (other == null || this.connectionConfig == null || other.connectionConfig == null){
+            return false;
+        }
+        return Objects.equals(this.connectionConfig.getIp(), other.connectionConfig.getIp())
+                && Objects.equals(this.connectionConfig.getPort(), other.connectionConfig.getPort());
+    }
+
     /**
      * 连接配置
      */
     @Data
-    static class ConnectionConfig{
+    public static class ConnectionConfig{
         private DatasourceDriveType datasourceType;
         private String ip;
         private Integer port;
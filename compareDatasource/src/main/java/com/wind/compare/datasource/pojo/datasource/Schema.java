@@ -15,4 +15,8 @@ public class Schema{
     private String schemaName;
     private String defaultCharacterName;
     private Map<String, Table> tableMap;
+    /**
+     * 结构指纹(全部表名+表指纹)，导出快照时计算，指纹相同的库对比时直接跳过
+     */
+    private Long fingerprint;
 }
@@ -2,6 +2,7 @@ package com.wind.compare.datasource.pojo.datasource;
 
 import lombok.Data;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -25,4 +26,37 @@ public class Table{
      */
     private String tableCollation;
     private String tableComment;
+    /**
+     * 建表时间(表结构重建时也会刷新)，用于增量导出
+     */
+    private Date createTime;
+    /**
+     * 最后更新时间(每次写入数据都会刷新，只做展示，不用于判断结构变化)
+     */
+    private Date updateTime;
+    /**
+     * 结构校验值(按表分组聚合 字段、索引元数据的行数 + CRC)，用于增量导出时判断表结构是否变化
+     */
+    private Long structureChecksum;
+    /**
+     * 结构指纹(字段+索引)，导出快照时计算，指纹相同的表对比时直接跳过
+     */
+    private Long fingerprint;
+    /**
+     * 原生建表语句(SHOW CREATE TABLE，已去掉 AUTO_INCREMENT 计数)，开启采集时才有值
+     */
+    private String createSql;
+    /**
+     * 原生建表语句的摘要(已去掉版本差异)，两边都有且相同时直接判定表一致，不同时仍按表指纹、字段、索引对比
+     */
+    private Long createSqlHash;
+    /**
+     * 估算行数(TABLE_ROWS，InnoDB 为统计值)，用于估算变更代价，不参与对比
+     */
+    private Long tableRows;
+    /**
+     * 数据、索引占用的字节数(DATA_LENGTH、INDEX_LENGTH)，用于估算变更代价，不参与对比
+     */
+    private Long dataLength;
+    private Long indexLength;
 }
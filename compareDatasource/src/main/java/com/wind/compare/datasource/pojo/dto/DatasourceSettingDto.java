@@ -6,6 +6,8 @@ import com.wind.compare.datasource.pojo.vo.DatasourceSettingVo;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 /**
  * @author wind.tan
  * @date 2024-05-14
@@ -20,6 +22,37 @@ public class DatasourceSettingDto {
     private Integer port;
     private String username;
     private String password;
+    /**
+     * 连接的库(PostgreSQL、H2 必须连接到具体的库，MySQL/MariaDB 不需要)
+     */
+    private String database;
+    /**
+     * 抽取字段、索引时的并发数
+     */
+    private Integer extractParallelism;
+    /**
+     * 抽取字段、索引时每批的表数量
+     */
+    private Integer extractBatchSize;
+    /**
+     * 是否采集原生建表语句
+     */
+    private Boolean captureCreateSql;
+    /**
+     * 对比范围：包含/排除的库、表(通配符，或以 regex: 开头的正则，为空表示不限制)
+     */
+    private List<String> includeSchemas;
+    private List<String> excludeSchemas;
+    private List<String> includeTables;
+    private List<String> excludeTables;
+
+    /**
+     * 打印日志、返回错误信息时使用(不含密码)
+     * @return
+     */
+    public String toLogString(){
+        return "{connectionAlias=" + connectionAlias + ", datasource=" + datasource + ", ip=" + ip + ", port=" + port + ", database=" + database + ", username=" + username + "}";
+    }
 
     /**
      * 从vo转成dto
@@ -32,10 +65,19 @@ public class DatasourceSettingDto {
         }
         return DatasourceSettingDto.builder()
                 .connectionAlias(datasourceSettingVo.getConnectionAlias())
+                .datasourceType(datasourceSettingVo.getDatasourceType())
                 .datasource(DatasourceDriveType.getDataSourceByType(datasourceSettingVo.getDatasourceType()))
                 .ip(datasourceSettingVo.getIp())
                 .port(datasourceSettingVo.getPort())
                 .username(datasourceSettingVo.getUsername())
-                .password(datasourceSettingVo.getPassword()).build();
+                .password(datasourceSettingVo.getPassword())
+                .database(datasourceSettingVo.getDatabase())
+                .extractParallelism(datasourceSettingVo.getExtractParallelism())
+                .extractBatchSize(datasourceSettingVo.getExtractBatchSize())
+                .captureCreateSql(datasourceSettingVo.getCaptureCreateSql())
+                .includeSchemas(datasourceSettingVo.getIncludeSchemas())
+                .excludeSchemas(datasourceSettingVo.getExcludeSchemas())
+                .includeTables(datasourceSettingVo.getIncludeTables())
+                .excludeTables(datasourceSettingVo.getExcludeTables()).build();
     }
 }
@@ -0,0 +1,45 @@
+package com.wind.compare.datasource.pojo.job;
+
+import com.wind.compare.datasource.enums.JobStatus;
+import com.wind.compare.datasource.enums.JobType;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Path;
+import java.util.Date;
+
+/**
+ * 异步任务
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+@Getter
+@Setter
+public class CompareJob {
+    private final String jobId;
+    private final JobType jobType;
+    /**
+     * 任务目录(上传文件、结果文件都放在这里)
+     */
+    private final Path jobDir;
+    private final JobProgress progress = new JobProgress();
+    private final Date createTime = new Date();
+    private volatile JobStatus status = JobStatus.WAITING;
+    private volatile Date startTime;
+    private volatile Date finishTime;
+    /**
+     * 失败原因
+     */
+    private volatile String message;
+    /**
+     * 结果文件、下载时的文件名
+     */
+    private volatile Path artifact;
+    private volatile String fileName;
+
+    public CompareJob(String jobId, JobType jobType, Path jobDir) {
+        this.jobId = jobId;
+        this.jobType = jobType;
+        this.jobDir = jobDir;
+    }
+}
@@ -0,0 +1,72 @@
+package com.wind.compare.datasource.pojo.job;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 任务进度(多个抽取线程并发更新)
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+public class JobProgress {
+
+    /**
+     * 当前阶段
+     */
+    private volatile String stage;
+    private final AtomicInteger totalSchemas = new AtomicInteger();
+    private final AtomicInteger processedSchemas = new AtomicInteger();
+    private final AtomicInteger totalTables = new AtomicInteger();
+    private final AtomicInteger processedTables = new AtomicInteger();
+
+    /**
+     * 进入新阶段，计数清零
+     * @param stage         阶段
+     * @param totalSchemas  本阶段的库数量
+     * @param totalTables   本阶段的表数量
+     */
+    public void start(String stage, int totalSchemas, int totalTables) {
+        this.stage = stage;
+        this.totalSchemas.set(totalSchemas);
+        this.processedSchemas.set(0);
+        this.totalTables.set(totalTables);
+        this.processedTables.set(0);
+    }
+
+    public void schemaProcessed() {
+        processedSchemas.incrementAndGet();
+    }
+
+    public void tablesProcessed(int count) {
+        processedTables.addAndGet(count);
+    }
+
+    /**
+     * 直接设置已处理的表数量(对比按窗口汇报进度)
+     * @param processed 已处理的表数量
+     * @param total     表总数
+     */
+    public void setTables(int processed, int total) {
+        totalTables.set(total);
+        processedTables.set(processed);
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public int getTotalSchemas() {
+        return totalSchemas.get();
+    }
+
+    public int getProcessedSchemas() {
+        return processedSchemas.get();
+    }
+
+    public int getTotalTables() {
+        return totalTables.get();
+    }
+
+    public int getProcessedTables() {
+        return processedTables.get();
+    }
+}
@@ -0,0 +1,63 @@
+package com.wind.compare.datasource.pojo.snapshot;
+
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 快照清单：只记录库信息、每张表结构的哈希和表的统计信息，表结构按哈希单独存放(相同的表只存一份)
+ * @author wind.tan
+ * @date 2024-05-25
+ */
+@Data
+public class SnapshotManifest {
+
+    /**
+     * 快照id(清单内容的哈希，内容相同的快照id相同)
+     */
+    private String snapshotId;
+    private String connectionAlias;
+    /**
+     * 连接配置(不保存密码)
+     */
+    private SQLTableJSON.ConnectionConfig connectionConfig;
+    private Date createTime;
+    private Integer schemaCount;
+    private Integer tableCount;
+    /**
+     * 库名 -> 库
+     */
+    private Map<String, SchemaEntry> schemaMap;
+
+    /**
+     * 库
+     */
+    @Data
+    public static class SchemaEntry {
+        private String schemaName;
+        private String defaultCharacterName;
+        private Long fingerprint;
+        /**
+         * 表名 -> 表结构的哈希
+         */
+        private Map<String, String> tableMap;
+        /**
+         * 表名 -> 表的统计信息(时间、行数、大小每次导出都可能不同，不放进按结构去重的表文件)，没有统计信息的表不记录
+         */
+        private Map<String, TableStats> tableStatsMap;
+    }
+
+    /**
+     * 表的统计信息
+     */
+    @Data
+    public static class TableStats {
+        private Date createTime;
+        private Date updateTime;
+        private Long tableRows;
+        private Long dataLength;
+        private Long indexLength;
+    }
+}
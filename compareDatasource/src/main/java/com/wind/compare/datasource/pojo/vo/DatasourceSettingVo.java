@@ -2,6 +2,8 @@ package com.wind.compare.datasource.pojo.vo;
 
 import lombok.Data;
 
+import java.util.List;
+
 /**
  * @author wind.tan
  * @date 2024-05-14
@@ -14,4 +16,27 @@ public class DatasourceSettingVo {
     private Integer port;
     private String username;
     private String password;
+    /**
+     * 连接的库(PostgreSQL、H2 使用，为空时取默认库)
+     */
+    private String database;
+    /**
+     * 抽取字段、索引时的并发数(为空时取默认配置)
+     */
+    private Integer extractParallelism;
+    /**
+     * 抽取字段、索引时每批的表数量(为空时取默认配置)
+     */
+    private Integer extractBatchSize;
+    /**
+     * 是否采集原生建表语句 SHOW CREATE TABLE(为空时取默认配置，仅 MySQL/MariaDB 支持)
+     */
+    private Boolean captureCreateSql;
+    /**
+     * 对比范围：包含/排除的库、表(通配符，或以 regex: 开头的正则，为空表示不限制)
+     */
+    private List<String> includeSchemas;
+    private List<String> excludeSchemas;
+    private List<String> includeTables;
+    private List<String> excludeTables;
 }
@@ -0,0 +1,59 @@
+package com.wind.compare.datasource.pojo.vo;
+
+import com.wind.compare.datasource.enums.JobStatus;
+import com.wind.compare.datasource.enums.JobType;
+import com.wind.compare.datasource.pojo.job.CompareJob;
+import com.wind.compare.datasource.pojo.job.JobProgress;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 异步任务状态(返回给前端)
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+@Data
+public class JobVo {
+    private String jobId;
+    private JobType jobType;
+    private JobStatus status;
+    /**
+     * 当前阶段
+     */
+    private String stage;
+    private Integer totalSchemas;
+    private Integer processedSchemas;
+    private Integer totalTables;
+    private Integer processedTables;
+    /**
+     * 失败原因
+     */
+    private String message;
+    private Date createTime;
+    private Date startTime;
+    private Date finishTime;
+
+    /**
+     * 从任务转成vo
+     * @param job   任务
+     * @return
+     */
+    public static JobVo exchangeJobToVo(CompareJob job){
+        JobVo jobVo = new JobVo();
+        JobProgress progress = job.getProgress();
+        jobVo.setJobId(job.getJobId());
+        jobVo.setJobType(job.getJobType());
+        jobVo.setStatus(job.getStatus());
+        jobVo.setStage(progress.getStage());
+        jobVo.setTotalSchemas(progress.getTotalSchemas());
+        jobVo.setProcessedSchemas(progress.getProcessedSchemas());
+        jobVo.setTotalTables(progress.getTotalTables());
+        jobVo.setProcessedTables(progress.getProcessedTables());
+        jobVo.setMessage(job.getMessage());
+        jobVo.setCreateTime(job.getCreateTime());
+        jobVo.setStartTime(job.getStartTime());
+        jobVo.setFinishTime(job.getFinishTime());
+        return jobVo;
+    }
+}
@@ -0,0 +1,20 @@
+package com.wind.compare.datasource.pojo.vo;
+
+import lombok.Data;
+
+/**
+ * 两个数据库都能直接连接时的对比参数
+ * @author wind.tan
+ * @date 2024-05-25
+ */
+@Data
+public class LiveCompareVo {
+    /**
+     * 基准库配置
+     */
+    private DatasourceSettingVo base;
+    /**
+     * 待对比的数据库配置(对比范围以它为准)
+     */
+    private DatasourceSettingVo compare;
+}
@@ -0,0 +1,44 @@
+package com.wind.compare.datasource.pojo.vo;
+
+import com.wind.compare.datasource.enums.DatasourceDriveType;
+import com.wind.compare.datasource.pojo.snapshot.SnapshotManifest;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 服务端保存的快照(返回给前端)
+ * @author wind.tan
+ * @date 2024-05-25
+ */
+@Data
+public class SnapshotVo {
+    private String snapshotId;
+    private String connectionAlias;
+    private DatasourceDriveType datasourceType;
+    private String ip;
+    private Integer port;
+    private Date createTime;
+    private Integer schemaCount;
+    private Integer tableCount;
+
+    /**
+     * 从快照清单转成vo
+     * @param manifest  快照清单
+     * @return
+     */
+    public static SnapshotVo exchangeManifestToVo(SnapshotManifest manifest){
+        SnapshotVo snapshotVo = new SnapshotVo();
+        snapshotVo.setSnapshotId(manifest.getSnapshotId());
+        snapshotVo.setConnectionAlias(manifest.getConnectionAlias());
+        if (manifest.getConnectionConfig() != null){
+            snapshotVo.setDatasourceType(manifest.getConnectionConfig().getDatasourceType());
+            snapshotVo.setIp(manifest.getConnectionConfig().getIp());
+            snapshotVo.setPort(manifest.getConnectionConfig().getPort());
+        }
+        snapshotVo.setCreateTime(manifest.getCreateTime());
+        snapshotVo.setSchemaCount(manifest.getSchemaCount());
+        snapshotVo.setTableCount(manifest.getTableCount());
+        return snapshotVo;
+    }
+}
@@ -1,10 +1,13 @@
 package com.wind.compare.datasource.service;
 
+import com.wind.compare.datasource.diff.DiffSink;
 import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.job.JobProgress;
 import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.InvalidPropertiesFormatException;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -28,6 +31,23 @@ public interface CompareDataSourceService {
      */
     SQLTableJSON generateJsonTable(DatasourceSettingDto datasourceSetting) throws ExecutionException, InterruptedException;
 
+    /**
+     * 增量生成JSON形式的对象，没有变化的表直接复用上一次的快照
+     * @param datasourceSetting 数据库配置
+     * @param previous          上一次导出的快照(为空时全量生成)
+     * @return
+     */
+    SQLTableJSON generateJsonTable(DatasourceSettingDto datasourceSetting, SQLTableJSON previous) throws ExecutionException, InterruptedException;
+
+    /**
+     * 增量生成JSON形式的对象，并汇报抽取进度
+     * @param datasourceSetting 数据库配置
+     * @param previous          上一次导出的快照(为空时全量生成)
+     * @param progress          任务进度(可为空)
+     * @return
+     */
+    SQLTableJSON generateJsonTable(DatasourceSettingDto datasourceSetting, SQLTableJSON previous, JobProgress progress) throws ExecutionException, InterruptedException;
+
     /**
      * 从加密文本中解析出JSON对象
      * @param file          文件
@@ -37,6 +57,15 @@ public interface CompareDataSourceService {
      */
     SQLTableJSON getFromFile(MultipartFile file, String aesPassword) throws InvalidPropertiesFormatException;
 
+    /**
+     * 从加密文本流中解析出JSON对象
+     * @param in            加密文本流(不会关闭)
+     * @param aesPassword   密钥
+     * @return  JSON对象
+     * @throws InvalidPropertiesFormatException
+     */
+    SQLTableJSON getFromStream(InputStream in, String aesPassword) throws InvalidPropertiesFormatException;
+
     /**
      * 对比两个连接的表结构差异
      * @param base      基本连接
@@ -45,4 +74,13 @@ public interface CompareDataSourceService {
      */
     List<String> compareDiffDataSource(SQLTableJSON base, SQLTableJSON compare);
 
+    /**
+     * 对比两个连接的表结构差异，每生成一条语句就交给 sink(不在内存中累积结果)
+     * @param base      基本连接
+     * @param compare   对比连接
+     * @param sink      差异语句接收器
+     * @return 生成的语句数量
+     */
+    int compareDiffDataSource(SQLTableJSON base, SQLTableJSON compare, DiffSink sink);
+
 }
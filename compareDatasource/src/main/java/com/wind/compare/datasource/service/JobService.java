@@ -0,0 +1,55 @@
+package com.wind.compare.datasource.service;
+
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.pojo.job.CompareJob;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 异步任务：提交后立即返回任务id，轮询进度，完成后下载结果
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+public interface JobService {
+
+    /**
+     * 提交导出任务
+     * @param datasourceSetting 数据库配置
+     * @param aesPassword       密钥
+     * @return 任务
+     */
+    CompareJob submitExport(DatasourceSettingDto datasourceSetting, String aesPassword) throws IOException;
+
+    /**
+     * 提交对比任务(上传的基准文件先落盘，任务执行时再解析)
+     * @param baseFile          基准库的数据库表结构加密文件
+     * @param compareSetting    待对比的数据库配置
+     * @param aesPassword       密钥
+     * @return 任务
+     */
+    CompareJob submitCompare(InputStream baseFile, DatasourceSettingDto compareSetting, String aesPassword) throws IOException;
+
+    /**
+     * 提交对比任务，以快照库中的快照为基准
+     * @param snapshotId        基准快照id
+     * @param compareSetting    待对比的数据库配置
+     * @return 任务
+     */
+    CompareJob submitCompare(String snapshotId, DatasourceSettingDto compareSetting) throws IOException;
+
+    /**
+     * 提交对比任务，两个数据库同时抽取，直接对比
+     * @param baseSetting       基准库配置
+     * @param compareSetting    待对比的数据库配置
+     * @return 任务
+     */
+    CompareJob submitLiveCompare(DatasourceSettingDto baseSetting, DatasourceSettingDto compareSetting) throws IOException;
+
+    /**
+     * 获取任务(不存在或已过期时返回空)
+     * @param jobId 任务id
+     * @return
+     */
+    CompareJob getJob(String jobId);
+}
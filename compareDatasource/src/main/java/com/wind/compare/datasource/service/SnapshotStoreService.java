@@ -0,0 +1,42 @@
+package com.wind.compare.datasource.service;
+
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.snapshot.SnapshotManifest;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 服务端快照库：快照保存在本地磁盘，按表内容哈希去重，对比时按id引用基准快照，不用每次上传
+ * @author wind.tan
+ * @date 2024-05-25
+ */
+public interface SnapshotStoreService {
+
+    /**
+     * 保存快照(不保存连接密码)，内容相同的快照只保存一次
+     * @param sqlTableJson  快照
+     * @return 快照清单(不含库表明细)
+     */
+    SnapshotManifest save(SQLTableJSON sqlTableJson) throws IOException;
+
+    /**
+     * 按id读取快照，最近使用的快照缓存在内存中(多次对比共用，调用方不能修改)
+     * @param snapshotId    快照id
+     * @return 快照，不存在时返回空
+     */
+    SQLTableJSON load(String snapshotId) throws IOException;
+
+    /**
+     * 全部快照(按创建时间倒序，不含库表明细)
+     * @return
+     */
+    List<SnapshotManifest> list() throws IOException;
+
+    /**
+     * 删除快照，并清理不再被任何快照引用的表
+     * @param snapshotId    快照id
+     * @return 快照是否存在
+     */
+    boolean delete(String snapshotId) throws IOException;
+}
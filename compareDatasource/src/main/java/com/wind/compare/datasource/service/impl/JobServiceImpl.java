@@ -0,0 +1,308 @@
+package com.wind.compare.datasource.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import com.wind.compare.datasource.config.CompareMetrics;
+import com.wind.compare.datasource.config.ThreadPoolConfig;
+import com.wind.compare.datasource.diff.WriterDiffSink;
+import com.wind.compare.datasource.enums.JobStatus;
+import com.wind.compare.datasource.enums.JobType;
+import com.wind.compare.datasource.enums.SnapshotFormat;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.pojo.job.CompareJob;
+import com.wind.compare.datasource.service.CompareDataSourceService;
+import com.wind.compare.datasource.service.JobService;
+import com.wind.compare.datasource.service.SnapshotStoreService;
+import com.wind.compare.datasource.utils.AESUtils;
+import com.wind.compare.datasource.utils.ScopeFilter;
+import com.wind.compare.datasource.utils.SnapshotUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 异步任务：任务在 jobPool 中排队执行(同时执行的数量有上限)，结果文件写到本地磁盘，
+ * 完成超过 compare.job.retention 的任务连同结果文件一起清理
+ * @author wind.tan
+ * @date 2024-05-24
+ */
+@Slf4j
+@Service
+public class JobServiceImpl implements JobService {
+
+    private static final String BASE_FILE = "base.txt";
+    private static final String RESULT_FILE = "result.txt";
+
+    /**
+     * 任务id(去掉横线的 UUID)，也是任务目录名
+     */
+    private static final Pattern JOB_ID_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
+    @Resource
+    private CompareDataSourceService compareDataSourceService;
+
+    @Resource
+    private SnapshotStoreService snapshotStoreService;
+
+    @Resource
+    private CompareMetrics compareMetrics;
+
+    @Resource(name = ThreadPoolConfig.JOB_POOL)
+    private ThreadPoolExecutor jobPool;
+
+    @Resource(name = ThreadPoolConfig.COMMON_POOL)
+    private ExecutorService commonThreadPool;
+
+    /**
+     * 任务文件的存放目录
+     */
+    @Value("${compare.job.dir:${java.io.tmpdir}/compare-datasource-jobs}")
+    private String jobDir;
+
+    /**
+     * 已完成任务(含结果文件)的保留时间
+     */
+    @Value("${compare.job.retention:24h}")
+    private Duration retention;
+
+    /**
+     * 清理过期任务的间隔
+     */
+    @Value("${compare.job.cleanup-interval:10m}")
+    private Duration cleanupInterval;
+
+    @Value("${compare.snapshot.format:json}")
+    private String snapshotFormat;
+
+    @Value("${compare.snapshot.compress:true}")
+    private boolean snapshotCompress;
+
+    private final Map<String, CompareJob> jobMap = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = Paths.get(jobDir);
+        // 任务只保存在内存中，重启前遗留的任务目录已经无法访问，直接删除(只删任务目录，compare.job.dir 下的其他文件不动)
+        Files.createDirectories(root);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, path -> Files.isDirectory(path) && isJobId(path.getFileName().toString()))){
+            for (Path path : stream) {
+                FileUtil.del(path);
+            }
+        }
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jobCleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(cleanupInterval.toMillis(), 1000L);
+        cleaner.scheduleWithFixedDelay(this::cleanExpiredJobs, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (cleaner != null){
+            cleaner.shutdownNow();
+        }
+    }
+
+    @Override
+    public CompareJob submitExport(DatasourceSettingDto datasourceSetting, String aesPassword) throws IOException {
+        CompareJob job = createJob(JobType.EXPORT);
+        job.setFileName("generateDatasource_" + System.currentTimeMillis() + ".txt");
+        return submit(job, () -> {
+            SQLTableJSON sqlTableJson = compareDataSourceService.generateJsonTable(datasourceSetting, null, job.getProgress());
+            job.getProgress().start("写入结果文件", 0, 0);
+            Path artifact = job.getJobDir().resolve(RESULT_FILE);
+            try (OutputStream encryptOut = AESUtils.encryptOutputStream(compareMetrics.meterSnapshotWrite(new BufferedOutputStream(Files.newOutputStream(artifact))), aesPassword)){
+                SnapshotUtils.writeSnapshot(encryptOut, sqlTableJson, SnapshotFormat.getByName(snapshotFormat), snapshotCompress);
+            }
+            job.setArtifact(artifact);
+        });
+    }
+
+    @Override
+    public CompareJob submitCompare(InputStream baseFile, DatasourceSettingDto compareSetting, String aesPassword) throws IOException {
+        CompareJob job = createJob(JobType.COMPARE);
+        job.setFileName("compareDiffDataSource_" + System.currentTimeMillis() + ".txt");
+        // 请求结束后上传的临时文件就会被删除，提交前先落盘
+        Path basePath = job.getJobDir().resolve(BASE_FILE);
+        try {
+            Files.copy(baseFile, basePath);
+        } catch (IOException e) {
+            removeJob(job);
+            throw e;
+        }
+        return submit(job, () -> {
+            compare(job, () -> {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(basePath))){
+                    return compareDataSourceService.getFromStream(in, aesPassword);
+                }
+            }, compareSetting);
+            Files.deleteIfExists(basePath);
+        });
+    }
+
+    @Override
+    public CompareJob submitCompare(String snapshotId, DatasourceSettingDto compareSetting) throws IOException {
+        CompareJob job = createJob(JobType.COMPARE);
+        job.setFileName("compareDiffDataSource_" + System.currentTimeMillis() + ".txt");
+        return submit(job, () -> compare(job, () -> {
+            SQLTableJSON base = snapshotStoreService.load(snapshotId);
+            if (base == null){
+                throw new IllegalArgumentException("快照不存在:" + snapshotId);
+            }
+            return base;
+        }, compareSetting));
+    }
+
+    @Override
+    public CompareJob submitLiveCompare(DatasourceSettingDto baseSetting, DatasourceSettingDto compareSetting) throws IOException {
+        CompareJob job = createJob(JobType.COMPARE);
+        job.setFileName("compareDiffDataSource_" + System.currentTimeMillis() + ".txt");
+        // 进度只汇报待对比库的抽取
+        return submit(job, () -> compare(job, () -> compareDataSourceService.generateJsonTable(baseSetting), compareSetting));
+    }
+
+    /**
+     * 对比任务：读取基准与抽取对比库同时进行，然后边对比边写入结果文件
+     * @param job               任务
+     * @param baseLoader        读取基准快照
+     * @param compareSetting    待对比的数据库配置
+     */
+    private void compare(CompareJob job, Callable<SQLTableJSON> baseLoader, DatasourceSettingDto compareSetting) throws Exception {
+        // 1、读取基准与抽取对比库同时进行
+        CompletableFuture<SQLTableJSON> baseFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return baseLoader.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, commonThreadPool);
+        SQLTableJSON compare = compareDataSourceService.generateJsonTable(compareSetting, null, job.getProgress());
+        // 基准按同样的范围过滤(不修改原对象，快照库中缓存的快照是共用的)
+        SQLTableJSON base = ScopeFilter.of(compareSetting).apply(baseFuture.get());
+
+        // 2、边对比边写入结果文件，按窗口汇报进度
+        job.getProgress().start("对比差异", 0, 0);
+        Path artifact = job.getJobDir().resolve(RESULT_FILE);
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(artifact), StandardCharsets.UTF_8))){
+            WriterDiffSink sink = new WriterDiffSink(writer) {
+                @Override
+                public void progress(int processedTables, int totalTables) {
+                    job.getProgress().setTables(processedTables, totalTables);
+                }
+            };
+            if (compareDataSourceService.compareDiffDataSource(base, compare, sink) == 0){
+                sink.write("两个数据库的表结构没有差异!!");
+            }
+            sink.writeEnd();
+            sink.flush();
+        }
+        job.setArtifact(artifact);
+    }
+
+    @Override
+    public CompareJob getJob(String jobId) {
+        return jobId == null ? null : jobMap.get(jobId);
+    }
+
+    /**
+     * 清理完成时间超过保留时间的任务及其文件
+     */
+    public void cleanExpiredJobs() {
+        long expireBefore = System.currentTimeMillis() - retention.toMillis();
+        for (CompareJob job : jobMap.values()) {
+            if (job.getStatus().isFinished() && job.getFinishTime() != null && job.getFinishTime().getTime() <= expireBefore){
+                log.info("清理过期任务:{}", job.getJobId());
+                removeJob(job);
+            }
+        }
+    }
+
+    private CompareJob createJob(JobType jobType) throws IOException {
+        String jobId = IdUtil.fastSimpleUUID();
+        CompareJob job = new CompareJob(jobId, jobType, Files.createDirectories(Paths.get(jobDir, jobId)));
+        jobMap.put(jobId, job);
+        return job;
+    }
+
+    private void removeJob(CompareJob job) {
+        jobMap.remove(job.getJobId());
+        FileUtil.del(job.getJobDir().toFile());
+    }
+
+    /**
+     * 提交到任务线程池，排队已满时删除任务并抛出 RejectedExecutionException
+     * @param job   任务
+     * @param body  任务内容
+     * @return
+     */
+    private CompareJob submit(CompareJob job, JobBody body) {
+        try {
+            jobPool.execute(() -> run(job, body));
+        } catch (RejectedExecutionException e) {
+            removeJob(job);
+            throw new RejectedExecutionException("排队中的任务已达上限(" + jobPool.getQueue().size() + ")，请稍后再试", e);
+        }
+        return job;
+    }
+
+    private void run(CompareJob job, JobBody body) {
+        job.setStartTime(new Date());
+        job.setStatus(JobStatus.RUNNING);
+        JobStatus status = JobStatus.SUCCESS;
+        try {
+            body.run();
+        } catch (Throwable e) {
+            log.error("任务执行失败:{}", job.getJobId(), e);
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            job.setMessage(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName());
+            status = JobStatus.FAILED;
+        }
+        // 先记录完成时间，轮询看到结束状态时完成时间一定存在
+        job.setFinishTime(new Date());
+        job.setStatus(status);
+    }
+
+    private static boolean isJobId(String value) {
+        return value != null && JOB_ID_PATTERN.matcher(value).matches();
+    }
+
+    @FunctionalInterface
+    private interface JobBody {
+        void run() throws Exception;
+    }
+}
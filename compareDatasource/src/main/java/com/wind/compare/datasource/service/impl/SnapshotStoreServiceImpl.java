@@ -0,0 +1,373 @@
+package com.wind.compare.datasource.service.impl;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.pojo.snapshot.SnapshotManifest;
+import com.wind.compare.datasource.service.SnapshotStoreService;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘快照库
+ * 目录结构：
+ *   snapshots/{快照id}.json      快照清单(库信息 + 表名 -> 表结构哈希 + 表的统计信息)
+ *   tables/{哈希前2位}/{哈希}.json 单张表的结构(内容寻址，多个快照、多个库中相同的表只存一份)
+ * @author wind.tan
+ * @date 2024-05-25
+ */
+@Slf4j
+@Service
+public class SnapshotStoreServiceImpl implements SnapshotStoreService {
+
+    private static final String SNAPSHOT_DIR = "snapshots";
+    private static final String TABLE_DIR = "tables";
+    private static final String SUFFIX = ".json";
+    /**
+     * 快照id、表哈希都是 SHA-256 十六进制，校验后再拼路径
+     */
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * 快照库目录
+     */
+    @Value("${compare.snapshot.store.dir:${java.io.tmpdir}/compare-datasource-snapshots}")
+    private String storeDir;
+
+    /**
+     * 内存中缓存的快照数量
+     */
+    @Value("${compare.snapshot.store.cache-size:8}")
+    private int cacheSize;
+
+    private Path snapshotDir;
+    private Path tableDir;
+    private LRUCache<String, SQLTableJSON> snapshotCache;
+
+    /**
+     * 保存快照时持有读锁(可并发保存)，清理无引用的表时持有写锁
+     */
+    private final ReadWriteLock storeLock = new ReentrantReadWriteLock();
+
+    /**
+     * 快照id -> 读取快照时的锁
+     */
+    private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        snapshotDir = Files.createDirectories(Paths.get(storeDir, SNAPSHOT_DIR));
+        tableDir = Files.createDirectories(Paths.get(storeDir, TABLE_DIR));
+        snapshotCache = CacheUtil.newLRUCache(Math.max(cacheSize, 1));
+    }
+
+    @Override
+    public SnapshotManifest save(SQLTableJSON sqlTableJson) throws IOException {
+        FingerprintUtils.fill(sqlTableJson, true);
+        SnapshotManifest manifest = new SnapshotManifest();
+        manifest.setConnectionAlias(sqlTableJson.getConnectionAlias());
+        manifest.setConnectionConfig(withoutPassword(sqlTableJson.getConnectionConfig()));
+        manifest.setSchemaMap(new TreeMap<>());
+        int tableCount = 0;
+
+        storeLock.readLock().lock();
+        try {
+            // 1、逐张表按结构哈希落盘，已存在的表直接复用
+            Map<String, Schema> schemaMap = sqlTableJson.getSchemaMap() == null ? new HashMap<>() : sqlTableJson.getSchemaMap();
+            for (Schema schema : schemaMap.values()) {
+                SnapshotManifest.SchemaEntry schemaEntry = new SnapshotManifest.SchemaEntry();
+                schemaEntry.setSchemaName(schema.getSchemaName());
+                schemaEntry.setDefaultCharacterName(schema.getDefaultCharacterName());
+                schemaEntry.setFingerprint(schema.getFingerprint());
+                schemaEntry.setTableMap(new TreeMap<>());
+                schemaEntry.setTableStatsMap(new TreeMap<>());
+                if (schema.getTableMap() != null){
+                    for (Table table : schema.getTableMap().values()) {
+                        schemaEntry.getTableMap().put(table.getTableName(), writeTable(table));
+                        SnapshotManifest.TableStats stats = statsOf(table);
+                        if (stats != null){
+                            schemaEntry.getTableStatsMap().put(table.getTableName(), stats);
+                        }
+                    }
+                    tableCount += schema.getTableMap().size();
+                }
+                manifest.getSchemaMap().put(schema.getSchemaName(), schemaEntry);
+            }
+            manifest.setSchemaCount(manifest.getSchemaMap().size());
+            manifest.setTableCount(tableCount);
+
+            // 2、清单内容的哈希即快照id，相同内容的快照只保留第一次保存的清单
+            String snapshotId = DigestUtil.sha256Hex(JSON.toJSONString(manifest));
+            manifest.setSnapshotId(snapshotId);
+            manifest.setCreateTime(new Date());
+            Path manifestPath = snapshotDir.resolve(snapshotId + SUFFIX);
+            if (Files.exists(manifestPath)){
+                return summary(readManifest(manifestPath));
+            }
+            writeAtomically(manifestPath, JSON.toJSONBytes(manifest));
+        } finally {
+            storeLock.readLock().unlock();
+        }
+        return summary(manifest);
+    }
+
+    @Override
+    public SQLTableJSON load(String snapshotId) throws IOException {
+        if (!isHash(snapshotId) || !Files.exists(snapshotDir.resolve(snapshotId + SUFFIX))){
+            return null;
+        }
+        SQLTableJSON sqlTableJson = snapshotCache.get(snapshotId);
+        if (sqlTableJson != null){
+            return sqlTableJson;
+        }
+        // 多个对比同时引用同一个未缓存的快照时只读取一次
+        synchronized (loadLocks.computeIfAbsent(snapshotId, key -> new Object())){
+            sqlTableJson = snapshotCache.get(snapshotId);
+            if (sqlTableJson == null){
+                sqlTableJson = readSnapshot(snapshotId);
+                snapshotCache.put(snapshotId, sqlTableJson);
+            }
+        }
+        return sqlTableJson;
+    }
+
+    @Override
+    public List<SnapshotManifest> list() throws IOException {
+        List<SnapshotManifest> manifestList = new ArrayList<>();
+        try (Stream<Path> pathStream = Files.list(snapshotDir)){
+            for (Path path : (Iterable<Path>) pathStream::iterator) {
+                if (path.getFileName().toString().endsWith(SUFFIX)){
+                    manifestList.add(summary(readManifest(path)));
+                }
+            }
+        }
+        manifestList.sort(Comparator.comparing(SnapshotManifest::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        return manifestList;
+    }
+
+    @Override
+    public boolean delete(String snapshotId) throws IOException {
+        if (!isHash(snapshotId)){
+            return false;
+        }
+        storeLock.writeLock().lock();
+        try {
+            snapshotCache.remove(snapshotId);
+            loadLocks.remove(snapshotId);
+            if (!Files.deleteIfExists(snapshotDir.resolve(snapshotId + SUFFIX))){
+                return false;
+            }
+            removeUnreferencedTables();
+            return true;
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 读取清单和清单引用的全部表，同一个哈希只解析一次
+     * @param snapshotId    快照id
+     * @return
+     */
+    private SQLTableJSON readSnapshot(String snapshotId) throws IOException {
+        SnapshotManifest manifest = readManifest(snapshotDir.resolve(snapshotId + SUFFIX));
+        SQLTableJSON sqlTableJson = new SQLTableJSON().setConnectionAlias(manifest.getConnectionAlias());
+        sqlTableJson.setConnectionConfig(manifest.getConnectionConfig());
+        sqlTableJson.setSchemaMap(new HashMap<>());
+        Map<String, Table> tableByHash = new HashMap<>();
+        for (SnapshotManifest.SchemaEntry schemaEntry : manifest.getSchemaMap().values()) {
+            Schema schema = new Schema();
+            schema.setSchemaName(schemaEntry.getSchemaName());
+            schema.setDefaultCharacterName(schemaEntry.getDefaultCharacterName());
+            schema.setFingerprint(schemaEntry.getFingerprint());
+            schema.setTableMap(new HashMap<>(schemaEntry.getTableMap().size() * 4 / 3 + 1));
+            Map<String, SnapshotManifest.TableStats> tableStatsMap = schemaEntry.getTableStatsMap() == null ? Collections.emptyMap() : schemaEntry.getTableStatsMap();
+            for (Map.Entry<String, String> tableEntry : schemaEntry.getTableMap().entrySet()) {
+                Table table = tableByHash.get(tableEntry.getValue());
+                if (table == null){
+                    table = JSON.parseObject(Files.readAllBytes(tablePath(tableEntry.getValue())), Table.class);
+                    tableByHash.put(tableEntry.getValue(), table);
+                }
+                // 结构相同的表共用一个对象，有统计信息时复制一份再填上
+                SnapshotManifest.TableStats stats = tableStatsMap.get(tableEntry.getKey());
+                if (stats != null){
+                    table = structureOf(table);
+                    table.setCreateTime(stats.getCreateTime());
+                    table.setUpdateTime(stats.getUpdateTime());
+                    table.setTableRows(stats.getTableRows());
+                    table.setDataLength(stats.getDataLength());
+                    table.setIndexLength(stats.getIndexLength());
+                }
+                schema.getTableMap().put(tableEntry.getKey(), table);
+            }
+            sqlTableJson.getSchemaMap().put(schema.getSchemaName(), schema);
+        }
+        FingerprintUtils.fill(sqlTableJson, true);
+        return sqlTableJson;
+    }
+
+    /**
+     * 写入单张表的结构，返回结构哈希
+     * 时间、行数、大小每次导出都会变，不参与哈希(记录在清单中)，否则同一张表永远无法去重
+     * @param table 表
+     * @return
+     */
+    private String writeTable(Table table) throws IOException {
+        byte[] content = JSON.toJSONBytes(structureOf(table));
+        String hash = DigestUtil.sha256Hex(content);
+        Path path = tablePath(hash);
+        if (!Files.exists(path)){
+            Files.createDirectories(path.getParent());
+            writeAtomically(path, content);
+        }
+        return hash;
+    }
+
+    /**
+     * 表结构(不含时间、行数、大小)
+     * @param table 表
+     * @return 新对象，字段、索引列表与原表共用
+     */
+    private static Table structureOf(Table table) {
+        Table structure = new Table();
+        structure.setTableName(table.getTableName());
+        structure.setTableEngine(table.getTableEngine());
+        structure.setColumnList(table.getColumnList());
+        structure.setIndexList(table.getIndexList());
+        structure.setCharset(table.getCharset());
+        structure.setTableCollation(table.getTableCollation());
+        structure.setTableComment(table.getTableComment());
+        structure.setFingerprint(table.getFingerprint());
+        structure.setCreateSql(table.getCreateSql());
+        structure.setCreateSqlHash(table.getCreateSqlHash());
+        structure.setStructureChecksum(table.getStructureChecksum());
+        return structure;
+    }
+
+    /**
+     * 表的统计信息
+     * @param table 表
+     * @return 都为空时返回空
+     */
+    private static SnapshotManifest.TableStats statsOf(Table table) {
+        if (table.getCreateTime() == null && table.getUpdateTime() == null && table.getTableRows() == null
+                && table.getDataLength() == null && table.getIndexLength() == null){
+            return null;
+        }
+        SnapshotManifest.TableStats stats = new SnapshotManifest.TableStats();
+        stats.setCreateTime(table.getCreateTime());
+        stats.setUpdateTime(table.getUpdateTime());
+        stats.setTableRows(table.getTableRows());
+        stats.setDataLength(table.getDataLength());
+        stats.setIndexLength(table.getIndexLength());
+        return stats;
+    }
+
+    /**
+     * 清理不再被任何清单引用的表
+     */
+    private void removeUnreferencedTables() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        try (Stream<Path> pathStream = Files.list(snapshotDir)){
+            for (Path path : (Iterable<Path>) pathStream::iterator) {
+                if (!path.getFileName().toString().endsWith(SUFFIX)){
+                    continue;
+                }
+                for (SnapshotManifest.SchemaEntry schemaEntry : readManifest(path).getSchemaMap().values()) {
+                    referenced.addAll(schemaEntry.getTableMap().values());
+                }
+            }
+        }
+        int removed = 0;
+        try (Stream<Path> pathStream = Files.walk(tableDir)){
+            for (Path path : (Iterable<Path>) pathStream::iterator) {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(SUFFIX) && !referenced.contains(fileName.substring(0, fileName.length() - SUFFIX.length()))){
+                    Files.deleteIfExists(path);
+                    removed++;
+                }
+            }
+        }
+        log.info("清理无引用的表:{}张", removed);
+    }
+
+    /**
+     * 先写临时文件再改名，读取方不会看到写了一半的文件
+     * @param path      目标文件
+     * @param content   内容
+     */
+    private static void writeAtomically(Path path, byte[] content) throws IOException {
+        Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempPath, content);
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // 并发写入同一张表，内容相同，保留先写入的
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private static SnapshotManifest readManifest(Path path) throws IOException {
+        return JSON.parseObject(Files.readAllBytes(path), SnapshotManifest.class);
+    }
+
+    /**
+     * 去掉库表明细的清单
+     * @param manifest  清单
+     * @return
+     */
+    private static SnapshotManifest summary(SnapshotManifest manifest) {
+        manifest.setSchemaMap(null);
+        return manifest;
+    }
+
+    private static SQLTableJSON.ConnectionConfig withoutPassword(SQLTableJSON.ConnectionConfig connectionConfig) {
+        if (connectionConfig == null){
+            return null;
+        }
+        SQLTableJSON.ConnectionConfig copy = new SQLTableJSON.ConnectionConfig();
+        copy.setDatasourceType(connectionConfig.getDatasourceType());
+        copy.setIp(connectionConfig.getIp());
+        copy.setPort(connectionConfig.getPort());
+        copy.setUsername(connectionConfig.getUsername());
+        return copy;
+    }
+
+    private Path tablePath(String hash) {
+        return tableDir.resolve(hash.substring(0, 2)).resolve(hash + SUFFIX);
+    }
+
+    private static boolean isHash(String value) {
+        return value != null && HASH_PATTERN.matcher(value).matches();
+    }
+}
@@ -1,10 +1,24 @@
 package com.wind.compare.datasource.utils;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author wind.tan
@@ -12,6 +26,25 @@ import java.security.SecureRandom;
  */
 public class AESUtils {
 
+    private static final String ALGORITHM = "AES";
+    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+
+    /**
+     * 流式加密文件的文件头，后面是 Base64 编码的密文；没有文件头的是旧版本的十六进制密文
+     */
+    public static final String STREAM_HEADER = "#AES-B64-1\n";
+    private static final byte[] STREAM_HEADER_BYTES = STREAM_HEADER.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 流式加解密每一层的缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 密钥缓存：同一个密码派生出的密钥都一样，不用每次都跑 KeyGenerator + SHA1PRNG
+     */
+    private static final Map<String, SecretKeySpec> KEY_CACHE = new ConcurrentHashMap<>();
+
     /**
      * 将传入的明文转换为密文
      * @param str
@@ -21,17 +54,8 @@ public class AESUtils {
     public static String encode(String str,String pwd) {
         byte[] result = null;
         try {
-            KeyGenerator kgen = KeyGenerator.getInstance("AES");
-            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
-            random.setSeed(pwd.getBytes());
-            kgen.init(128, random);
-            SecretKey secretKey = kgen.generateKey();
-            byte[] enCodeFormat = secretKey.getEncoded();
-            SecretKeySpec key = new SecretKeySpec(enCodeFormat, "AES");
-
             // 创建密码器
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, key);
+            Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, pwd);
             byte[] byteContent = str.getBytes();
             result = cipher.doFinal(byteContent);
 
@@ -49,15 +73,12 @@ public class AESUtils {
      * @return
      */
     private static String parseByte2HexStr(byte buf[]) {
-        StringBuffer sb = new StringBuffer();
+        char[] hexChars = new char[buf.length * 2];
         for (int i = 0; i < buf.length; i++) {
-            String hex = Integer.toHexString(buf[i] & 0xFF);
-            if (hex.length() == 1) {
-                hex = '0' + hex;
-            }
-            sb.append(hex.toUpperCase());
+            hexChars[i * 2] = Character.toUpperCase(Character.forDigit((buf[i] >> 4) & 0xF, 16));
+            hexChars[i * 2 + 1] = Character.toUpperCase(Character.forDigit(buf[i] & 0xF, 16));
         }
-        return sb.toString();
+        return new String(hexChars);
     }
 
     /**
@@ -70,17 +91,8 @@ public class AESUtils {
         byte[] result = null;
         byte[] content = parseHexStr2Byte(str);
         try {
-            KeyGenerator kgen = KeyGenerator.getInstance("AES");
-            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
-            random.setSeed(pwd.getBytes());
-            kgen.init(128, random);
-            SecretKey secretKey = kgen.generateKey();
-            byte[] enCodeFormat = secretKey.getEncoded();
-            SecretKeySpec key = new SecretKeySpec(enCodeFormat, "AES");
-
             // 创建密码器
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, key);
+            Cipher cipher = newCipher(Cipher.DECRYPT_MODE, pwd);
             result = cipher.doFinal(content);
 
         } catch (Exception e) {
@@ -91,6 +103,87 @@ public class AESUtils {
         return new String(result);
     }
 
+    /**
+     * 流式加密：先写文件头，再把写入的明文(UTF-8)加密、Base64 编码后写入 out
+     * 关闭返回的流时才会写出最后一块密文，并同时关闭 out
+     * @param out   密文输出流
+     * @param pwd   密码
+     * @return  明文输出流
+     * @throws IOException
+     */
+    public static OutputStream encryptOutputStream(OutputStream out, String pwd) throws IOException {
+        Cipher cipher;
+        try {
+            cipher = newCipher(Cipher.ENCRYPT_MODE, pwd);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("初始化加密器失败", e);
+        }
+        out.write(STREAM_HEADER_BYTES);
+        return new CipherOutputStream(Base64.getEncoder().wrap(out), cipher);
+    }
+
+    /**
+     * 流式解密：有文件头的按 Base64 密文边读边解密，没有文件头的按旧版本十六进制密文边读边解密
+     * 返回的明文统一为 UTF-8 编码
+     * @param in    密文输入流
+     * @param pwd   密码
+     * @return  明文输入流
+     * @throws IOException
+     */
+    public static InputStream decryptInputStream(InputStream in, String pwd) throws IOException {
+        BufferedInputStream bufferedIn = new BufferedInputStream(in);
+        bufferedIn.mark(STREAM_HEADER_BYTES.length);
+        byte[] header = bufferedIn.readNBytes(STREAM_HEADER_BYTES.length);
+        try {
+            if (Arrays.equals(header, STREAM_HEADER_BYTES)){
+                return new BufferedInputStream(new CipherInputStream(new Base64ChunkInputStream(bufferedIn), newCipher(Cipher.DECRYPT_MODE, pwd)), BUFFER_SIZE);
+            }
+            bufferedIn.reset();
+            Cipher cipher = newCipher(Cipher.DECRYPT_MODE, pwd);
+            if (StandardCharsets.UTF_8.equals(Charset.defaultCharset())){
+                return new BufferedInputStream(new CipherInputStream(new HexChunkInputStream(bufferedIn), cipher), BUFFER_SIZE);
+            }
+            // 旧版本按系统默认编码加解密，系统编码不是 UTF-8 时只能整体解密后转码
+            byte[] plain = cipher.doFinal(new HexChunkInputStream(bufferedIn).readAllBytes());
+            return new ByteArrayInputStream(new String(plain).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("解密失败", e);
+        }
+    }
+
+    /**
+     * 创建密码器
+     * @param mode  加密/解密
+     * @param pwd   密码
+     * @return
+     * @throws GeneralSecurityException
+     */
+    private static Cipher newCipher(int mode, String pwd) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(mode, getKey(pwd));
+        return cipher;
+    }
+
+    /**
+     * 根据密码派生密钥(与旧版本的派生方式一致，旧文件仍可解密)
+     * @param pwd   密码
+     * @return
+     */
+    private static SecretKeySpec getKey(String pwd) throws GeneralSecurityException {
+        SecretKeySpec key = KEY_CACHE.get(pwd);
+        if (key != null){
+            return key;
+        }
+        KeyGenerator kgen = KeyGenerator.getInstance(ALGORITHM);
+        SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+        random.setSeed(pwd.getBytes());
+        kgen.init(128, random);
+        SecretKey secretKey = kgen.generateKey();
+        key = new SecretKeySpec(secretKey.getEncoded(), ALGORITHM);
+        KEY_CACHE.putIfAbsent(pwd, key);
+        return key;
+    }
+
     /**
      * 将十六进制转换为二进制
      *
@@ -109,4 +202,153 @@ public class AESUtils {
         }
         return result;
     }
+
+    /**
+     * 按块解码 Base64(JDK 自带的 Base64 解码流逐字节读取，大文件很慢)
+     * 跳过换行、引号等非 Base64 字符，文件被编辑器加了换行也能解析
+     */
+    private static class Base64ChunkInputStream extends InputStream {
+        /**
+         * Base64 字符(含补位的=)为1，其余为0
+         */
+        private static final int[] BASE64_CHAR = new int[256];
+        static {
+            for (byte c : "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/=".getBytes(StandardCharsets.US_ASCII)) {
+                BASE64_CHAR[c] = 1;
+            }
+        }
+
+        private final InputStream in;
+        private final byte[] raw = new byte[BUFFER_SIZE];
+        /**
+         * 待解码的字符：上一块剩下的(不足4个)字符 + 本块过滤后的字符
+         */
+        private final byte[] encoded = new byte[BUFFER_SIZE + 4];
+        private int encodedLength;
+        private byte[] decoded = new byte[0];
+        private int position;
+        private boolean eof;
+
+        private Base64ChunkInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (position >= decoded.length){
+                if (eof){
+                    return -1;
+                }
+                fill();
+            }
+            int count = Math.min(len, decoded.length - position);
+            System.arraycopy(decoded, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        private void fill() throws IOException {
+            int n = in.read(raw);
+            if (n == -1){
+                eof = true;
+            }
+            // 查表代替分支判断，非 Base64 字符写入后不移动下标，相当于丢弃
+            byte[] encoded = this.encoded;
+            int length = encodedLength;
+            for (int i = 0; i < n; i++) {
+                byte c = raw[i];
+                encoded[length] = c;
+                length += BASE64_CHAR[c & 0xFF];
+            }
+            encodedLength = length;
+            // 只解码完整的4字符分组，剩下的留到下一块
+            int usable = eof ? encodedLength : encodedLength - encodedLength % 4;
+            try {
+                decoded = Base64.getDecoder().decode(Arrays.copyOf(encoded, usable));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Base64 密文格式错误", e);
+            }
+            position = 0;
+            System.arraycopy(encoded, usable, encoded, 0, encodedLength - usable);
+            encodedLength -= usable;
+        }
+    }
+
+    /**
+     * 按块解码旧版本的十六进制密文，跳过引号、换行等非十六进制字符
+     */
+    private static class HexChunkInputStream extends InputStream {
+        /**
+         * 十六进制字符对应的值，其余为 -1
+         */
+        private static final int[] HEX_VALUE = new int[256];
+        static {
+            Arrays.fill(HEX_VALUE, -1);
+            for (int i = 0; i < 16; i++) {
+                HEX_VALUE[Character.forDigit(i, 16)] = i;
+                HEX_VALUE[Character.toUpperCase(Character.forDigit(i, 16))] = i;
+            }
+        }
+
+        private final InputStream in;
+        private final byte[] raw = new byte[BUFFER_SIZE];
+        /**
+         * 上一块剩下的半个字节(高4位)，-1 表示没有
+         */
+        private int pendingHigh = -1;
+        private boolean empty = true;
+
+        private HexChunkInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0){
+                return 0;
+            }
+            while (true){
+                // 每两个十六进制字符输出一个字节，最多读 len*2 个字符
+                int n = in.read(raw, 0, Math.min(raw.length, len * 2));
+                if (n == -1){
+                    // 与旧版本一致：末尾多出的半个字节忽略
+                    if (empty){
+                        throw new IOException("密文为空");
+                    }
+                    return -1;
+                }
+                int count = 0;
+                int high = pendingHigh;
+                for (int i = 0; i < n; i++) {
+                    int value = HEX_VALUE[raw[i] & 0xFF];
+                    if (value < 0){
+                        continue;
+                    }
+                    if (high < 0){
+                        high = value;
+                    } else {
+                        b[off + count++] = (byte) (high << 4 | value);
+                        high = -1;
+                    }
+                }
+                pendingHigh = high;
+                if (count > 0){
+                    empty = false;
+                    return count;
+                }
+            }
+        }
+    }
 }
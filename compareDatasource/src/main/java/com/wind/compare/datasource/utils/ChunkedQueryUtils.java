@@ -0,0 +1,77 @@
+package com.wind.compare.datasource.utils;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分块绑定参数查询工具
+ * 把超长的 IN 列表拆成固定大小的块，每块用 ? 占位绑定参数执行，SQL长度有上限，也不会超过 max_allowed_packet
+ * @author wind.tan
+ * @date 2024-05-21
+ */
+public class ChunkedQueryUtils {
+
+    /**
+     * SQL模板中 IN 列表的占位标记
+     */
+    public static final String IN_PLACEHOLDER = "{IN}";
+
+    /**
+     * 按块执行查询，每一行结果交给 handler 处理
+     * @param jdbcTemplate  jdbcTemplate
+     * @param sqlTemplate   SQL模板，IN 列表位置写 {IN}，eg: WHERE TABLE_SCHEMA = ? AND TABLE_NAME IN ({IN})
+     * @param fixedParams   {IN} 前面的固定参数
+     * @param inValues      IN 列表的全部取值
+     * @param chunkSize     每块最多的取值数量
+     * @param handler       逐行处理器
+     * @return 实际执行的块数
+     */
+    public static int queryInChunks(JdbcTemplate jdbcTemplate, String sqlTemplate, List<?> fixedParams, List<?> inValues, int chunkSize, RowCallbackHandler handler) {
+        if (inValues == null || inValues.isEmpty()){
+            return 0;
+        }
+        List<?> fixed = fixedParams == null ? Collections.emptyList() : fixedParams;
+        int size = Math.max(chunkSize, 1);
+        int chunkCount = 0;
+        for (int from = 0; from < inValues.size(); from += size) {
+            List<?> chunk = inValues.subList(from, Math.min(from + size, inValues.size()));
+            // 除最后一块外SQL文本都相同，驱动/服务端可以复用预编译语句
+            String sql = expandInClause(sqlTemplate, chunk.size());
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                int index = 1;
+                for (Object param : fixed) {
+                    ps.setObject(index++, param);
+                }
+                for (Object param : chunk) {
+                    ps.setObject(index++, param);
+                }
+                return ps;
+            }, handler);
+            chunkCount++;
+        }
+        return chunkCount;
+    }
+
+    /**
+     * 把模板中的 {IN} 替换为 size 个 ? 占位符
+     * @param sqlTemplate   SQL模板
+     * @param size          占位符数量
+     * @return
+     */
+    public static String expandInClause(String sqlTemplate, int size) {
+        StringBuilder placeholders = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            if (i > 0){
+                placeholders.append(',');
+            }
+            placeholders.append('?');
+        }
+        return sqlTemplate.replace(IN_PLACEHOLDER, placeholders);
+    }
+}
@@ -2,9 +2,11 @@ package com.wind.compare.datasource.utils;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.List;
@@ -13,8 +15,11 @@ import java.util.List;
  * @author wind.tan
  * @date 2024-05-16
  */
+@Slf4j
 public class FileUtils {
 
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
     /**
      * 下载文件通用方法
      * @param request       request
@@ -24,6 +29,26 @@ public class FileUtils {
      * @throws UnsupportedEncodingException
      */
     public static void downloadFile(HttpServletRequest request, HttpServletResponse response, String fileName, List<String> contentList) throws UnsupportedEncodingException {
+        downloadFile(request, response, fileName, out -> {
+            // 逐条写入需要导出的SQL
+            for (String content : contentList) {
+                out.write(content.getBytes());
+                // SQL换行
+                out.write(NEW_LINE.getBytes());
+            }
+        });
+    }
+
+    /**
+     * 边生成边下载：内容直接写入响应输出流，不需要先在内存中拼好全部内容
+     * 写入中途失败时记录日志并向上抛出，由容器中断连接，避免客户端拿到 200 和一份被截断的文件
+     * @param request       request
+     * @param response      response
+     * @param fileName      文件名
+     * @param writer        写入内容
+     * @throws UnsupportedEncodingException
+     */
+    public static void downloadFile(HttpServletRequest request, HttpServletResponse response, String fileName, ContentWriter writer) throws UnsupportedEncodingException {
         // 告诉浏览器下载的方式以及一些设置
         // 解决文件名乱码问题，获取浏览器类型，转换对应文件名编码格式，IE要求文件名必须是utf-8, firefo要求是iso-8859-1编码
         fileName = URLEncoder.encode(fileName, "UTF-8");
@@ -32,17 +57,30 @@ public class FileUtils {
         response.setContentType(mineType);
         // 设置一个响应头，无论是否被浏览器解析，都下载
         response.setHeader("Content-disposition", "attachment; filename=" + fileName);
-        // 将要下载的文件内容通过输出流写到浏览器
-        try (OutputStream out = response.getOutputStream()){
-            // 逐条写入需要导出的SQL
-            for (String content : contentList) {
-                out.write(content.getBytes());
-                // SQL换行
-                String newLine = System.getProperty("line.separator");
-                out.write(newLine.getBytes());
-            }
+        // 将要下载的文件内容通过输出流写到浏览器(失败时不能关闭输出流，关闭会把响应当作正常结束)
+        try {
+            OutputStream out = response.getOutputStream();
+            writer.write(out);
+            out.flush();
         } catch (IOException e) {
-            e.printStackTrace();
+            log.error("FileUtils.downloadFile 写入失败:{}", fileName, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            log.error("FileUtils.downloadFile 写入失败:{}", fileName, e);
+            throw e;
         }
     }
+
+    /**
+     * 下载内容写入器
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        /**
+         * 把内容写入输出流
+         * @param out   响应输出流
+         * @throws IOException
+         */
+        void write(OutputStream out) throws IOException;
+    }
 }
@@ -0,0 +1,154 @@
+package com.wind.compare.datasource.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 库、表结构指纹(64位 MurmurHash)
+ * 只覆盖对比时会用到的属性(与 Column/Index 的 equals 保持一致)，字段、索引按名称排序后再计算，
+ * 指纹相同即可认为对比结果没有差异，直接跳过整张表/整个库
+ * @author wind.tan
+ * @date 2024-05-22
+ */
+public class FingerprintUtils {
+
+    /**
+     * 字段分隔符(不会出现在库表元数据中)
+     */
+    private static final char FIELD_SPLIT = '\u0001';
+    private static final char ITEM_SPLIT = '\u0002';
+
+    /**
+     * 建表语句中的自增计数(表选项)，每张表、每次导出都不一样，不参与对比
+     */
+    private static final Pattern AUTO_INCREMENT_OPTION = Pattern.compile("\\s+AUTO_INCREMENT=\\d+");
+
+    /**
+     * 不同版本输出不一致的写法(只在计算摘要时去掉，不改动保存的建表语句)：
+     * 整数显示宽度【int(11) ==> int，MySQL 8.0.19 起不再输出】、COLLATE 子句(MySQL 8 会输出表的默认排序规则)
+     */
+    private static final Pattern INTEGER_DISPLAY_WIDTH = Pattern.compile("\\b(tinyint|smallint|mediumint|int|integer|bigint)\\(\\d+\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLLATE_CLAUSE = Pattern.compile("\\s+COLLATE[\\s=]+\\w+", Pattern.CASE_INSENSITIVE);
+    /**
+     * utf8 在 MySQL 8.0.30+、MariaDB 10.6+ 中输出为 utf8mb3
+     */
+    private static final Pattern UTF8MB3 = Pattern.compile("\\butf8mb3", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 计算整个快照中所有库、表的指纹
+     * @param sqlTableJSON  JSON对象
+     * @param onlyMissing   是否只计算缺失的指纹(兼容旧版本导出的文件)
+     */
+    public static void fill(SQLTableJSON sqlTableJSON, boolean onlyMissing) {
+        if (sqlTableJSON == null || sqlTableJSON.getSchemaMap() == null){
+            return;
+        }
+        for (Schema schema : sqlTableJSON.getSchemaMap().values()) {
+            if (onlyMissing && schema.getFingerprint() != null){
+                continue;
+            }
+            Collection<Table> tables = schema.getTableMap() == null ? Collections.emptyList() : schema.getTableMap().values();
+            for (Table table : tables) {
+                if (!onlyMissing || table.getFingerprint() == null){
+                    table.setFingerprint(tableFingerprint(table));
+                }
+            }
+            schema.setFingerprint(schemaFingerprint(schema));
+        }
+    }
+
+    /**
+     * 计算表指纹(不包含表名，表名相同才会对比)
+     * @param table 表
+     * @return
+     */
+    public static long tableFingerprint(Table table) {
+        StringBuilder builder = new StringBuilder(256);
+        List<Column> columnList = sortedCopy(table.getColumnList(), Comparator.comparing(Column::getColumnName, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (Column column : columnList) {
+            builder.append(column.getColumnName()).append(FIELD_SPLIT)
+                    .append(column.getColumnType()).append(FIELD_SPLIT)
+                    .append(column.getIsNullable()).append(FIELD_SPLIT)
+                    .append(column.getColumnDefault()).append(FIELD_SPLIT)
+                    .append(column.getColumnComment()).append(ITEM_SPLIT);
+        }
+        builder.append(ITEM_SPLIT);
+        List<Index> indexList = sortedCopy(table.getIndexList(), Comparator.comparing(Index::getIndexName, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (Index index : indexList) {
+            builder.append(index.getConstraintType()).append(FIELD_SPLIT)
+                    .append(index.getIndexName()).append(FIELD_SPLIT)
+                    .append(index.getIndexColumnList()).append(FIELD_SPLIT)
+                    .append(index.getIndexType()).append(ITEM_SPLIT);
+        }
+        return MurmurHash.hash64(builder);
+    }
+
+    /**
+     * 计算库指纹(表名 + 表指纹)，需先计算好表指纹
+     * @param schema    库
+     * @return
+     */
+    public static long schemaFingerprint(Schema schema) {
+        StringBuilder builder = new StringBuilder(64);
+        List<Table> tableList = sortedCopy(schema.getTableMap() == null ? null : schema.getTableMap().values(), Comparator.comparing(Table::getTableName, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (Table table : tableList) {
+            builder.append(table.getTableName()).append(FIELD_SPLIT).append(table.getFingerprint()).append(ITEM_SPLIT);
+        }
+        return MurmurHash.hash64(builder);
+    }
+
+    /**
+     * 规范化原生建表语句：去掉 AUTO_INCREMENT=n 表选项
+     * @param createSql SHOW CREATE TABLE 的结果
+     * @return
+     */
+    public static String normalizeCreateSql(String createSql) {
+        return createSql == null ? null : AUTO_INCREMENT_OPTION.matcher(createSql).replaceAll("");
+    }
+
+    /**
+     * 计算规范化后的建表语句摘要，先去掉不同版本输出不一致的写法，同一张表在 MySQL 5.7/8.0、MariaDB 上的摘要相同
+     * 摘要只作为"两张表一致"的捷径：摘要不同不代表表不一致，仍以表指纹、逐个字段/索引对比为准
+     * @param createSql 规范化后的建表语句
+     * @return
+     */
+    public static Long createSqlHash(String createSql) {
+        if (createSql == null){
+            return null;
+        }
+        String sql = INTEGER_DISPLAY_WIDTH.matcher(createSql).replaceAll("$1");
+        sql = COLLATE_CLAUSE.matcher(sql).replaceAll("");
+        sql = UTF8MB3.matcher(sql).replaceAll("utf8");
+        return MurmurHash.hash64(sql);
+    }
+
+    /**
+     * 两个指纹都存在且相同
+     * @param fingerprint   指纹
+     * @param other         另一个指纹
+     * @return
+     */
+    public static boolean same(Long fingerprint, Long other) {
+        return fingerprint != null && fingerprint.equals(other);
+    }
+
+    private static <T> List<T> sortedCopy(Collection<T> collection, Comparator<T> comparator) {
+        if (collection == null || collection.isEmpty()){
+            return Collections.emptyList();
+        }
+        List<T> list = new ArrayList<>(collection);
+        list.sort(comparator);
+        return list;
+    }
+}
@@ -0,0 +1,227 @@
+package com.wind.compare.datasource.utils;
+
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 库、表的对比范围(包含/排除)
+ * 规则写法：默认是通配符(* 任意个字符，? 单个字符)，以 regex: 开头的是正则；不区分大小写；表规则只匹配表名
+ * 通配符规则会转成 LIKE 条件下推到 information_schema 查询中，正则规则在查出表清单后过滤(同样不会查询字段、索引)
+ * @author wind.tan
+ * @date 2024-05-25
+ */
+public class ScopeFilter {
+
+    private static final String REGEX_PREFIX = "regex:";
+
+    /**
+     * 不限制范围
+     */
+    public static final ScopeFilter ALL = new ScopeFilter(null, null, null, null);
+
+    private final List<Rule> includeSchemas;
+    private final List<Rule> excludeSchemas;
+    private final List<Rule> includeTables;
+    private final List<Rule> excludeTables;
+
+    private ScopeFilter(List<String> includeSchemas, List<String> excludeSchemas, List<String> includeTables, List<String> excludeTables) {
+        this.includeSchemas = compile(includeSchemas);
+        this.excludeSchemas = compile(excludeSchemas);
+        this.includeTables = compile(includeTables);
+        this.excludeTables = compile(excludeTables);
+    }
+
+    /**
+     * 从数据库配置中取对比范围
+     * @param datasourceSetting 数据库配置
+     * @return
+     */
+    public static ScopeFilter of(DatasourceSettingDto datasourceSetting) {
+        if (datasourceSetting == null){
+            return ALL;
+        }
+        return of(datasourceSetting.getIncludeSchemas(), datasourceSetting.getExcludeSchemas(), datasourceSetting.getIncludeTables(), datasourceSetting.getExcludeTables());
+    }
+
+    /**
+     * @param includeSchemas    包含的库(为空表示全部)
+     * @param excludeSchemas    排除的库
+     * @param includeTables     包含的表(为空表示全部)
+     * @param excludeTables     排除的表
+     * @return
+     */
+    public static ScopeFilter of(List<String> includeSchemas, List<String> excludeSchemas, List<String> includeTables, List<String> excludeTables) {
+        ScopeFilter filter = new ScopeFilter(includeSchemas, excludeSchemas, includeTables, excludeTables);
+        return filter.isAll() ? ALL : filter;
+    }
+
+    /**
+     * 是否不限制范围
+     * @return
+     */
+    public boolean isAll() {
+        return includeSchemas.isEmpty() && excludeSchemas.isEmpty() && includeTables.isEmpty() && excludeTables.isEmpty();
+    }
+
+    public boolean acceptSchema(String schemaName) {
+        return accept(schemaName, includeSchemas, excludeSchemas);
+    }
+
+    public boolean acceptTable(String tableName) {
+        return accept(tableName, includeTables, excludeTables);
+    }
+
+    /**
+     * 把通配符规则拼成 SQL 条件(以 AND 开头，参数按顺序追加到 params)
+     * @param schemaColumn  库名字段，eg: tab.TABLE_SCHEMA
+     * @param tableColumn   表名字段，eg: tab.TABLE_NAME
+     * @param params        绑定参数
+     * @return 没有通配符规则时返回空串
+     */
+    public String toSqlCondition(String schemaColumn, String tableColumn, List<Object> params) {
+        StringBuilder condition = new StringBuilder();
+        appendCondition(condition, schemaColumn, includeSchemas, excludeSchemas, params);
+        appendCondition(condition, tableColumn, includeTables, excludeTables, params);
+        return condition.toString();
+    }
+
+    /**
+     * 按范围过滤快照(上传的基准、快照库中的快照)，不修改原对象
+     * 有表被过滤掉的库会重新计算库指纹，保证与按同样范围导出的快照指纹一致
+     * @param sqlTableJSON  快照
+     * @return 过滤后的快照
+     */
+    public SQLTableJSON apply(SQLTableJSON sqlTableJSON) {
+        if (isAll() || sqlTableJSON == null || sqlTableJSON.getSchemaMap() == null){
+            return sqlTableJSON;
+        }
+        SQLTableJSON filtered = new SQLTableJSON().setConnectionAlias(sqlTableJSON.getConnectionAlias());
+        filtered.setConnectionConfig(sqlTableJSON.getConnectionConfig());
+        filtered.setSchemaMap(new HashMap<>());
+        for (Schema schema : sqlTableJSON.getSchemaMap().values()) {
+            if (!acceptSchema(schema.getSchemaName())){
+                continue;
+            }
+            Map<String, Table> tableMap = new HashMap<>();
+            if (schema.getTableMap() != null){
+                schema.getTableMap().forEach((tableName, table) -> {
+                    if (acceptTable(tableName)){
+                        tableMap.put(tableName, table);
+                    }
+                });
+            }
+            if (tableMap.isEmpty()){
+                continue;
+            }
+            Schema filteredSchema = new Schema();
+            filteredSchema.setSchemaName(schema.getSchemaName());
+            filteredSchema.setDefaultCharacterName(schema.getDefaultCharacterName());
+            filteredSchema.setTableMap(tableMap);
+            filteredSchema.setFingerprint(tableMap.size() == schema.getTableMap().size() ? schema.getFingerprint() : null);
+            filtered.getSchemaMap().put(filteredSchema.getSchemaName(), filteredSchema);
+        }
+        FingerprintUtils.fill(filtered, true);
+        return filtered;
+    }
+
+    private static boolean accept(String name, List<Rule> includes, List<Rule> excludes) {
+        if (name == null){
+            return includes.isEmpty();
+        }
+        if (!includes.isEmpty() && includes.stream().noneMatch(rule -> rule.matches(name))){
+            return false;
+        }
+        return excludes.stream().noneMatch(rule -> rule.matches(name));
+    }
+
+    /**
+     * 包含规则全部是通配符时才能下推(有正则时 OR 条件无法完整表达)，排除规则逐条下推
+     */
+    private static void appendCondition(StringBuilder condition, String column, List<Rule> includes, List<Rule> excludes, List<Object> params) {
+        if (!includes.isEmpty() && includes.stream().allMatch(rule -> rule.like != null)){
+            condition.append(" AND (");
+            for (int i = 0; i < includes.size(); i++) {
+                condition.append(i == 0 ? "" : " OR ").append("LOWER(").append(column).append(") LIKE ?");
+                params.add(includes.get(i).like);
+            }
+            condition.append(")");
+        }
+        for (Rule rule : excludes) {
+            if (rule.like != null){
+                condition.append(" AND LOWER(").append(column).append(") NOT LIKE ?");
+                params.add(rule.like);
+            }
+        }
+    }
+
+    private static List<Rule> compile(List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()){
+            return Collections.emptyList();
+        }
+        List<Rule> ruleList = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            if (pattern != null && !pattern.trim().isEmpty()){
+                ruleList.add(new Rule(pattern.trim()));
+            }
+        }
+        return ruleList;
+    }
+
+    /**
+     * 单条规则
+     */
+    private static class Rule {
+        private final Pattern pattern;
+        /**
+         * 对应的 LIKE 参数(小写)，正则规则为空
+         */
+        private final String like;
+
+        Rule(String expression) {
+            if (expression.startsWith(REGEX_PREFIX)){
+                this.pattern = Pattern.compile(expression.substring(REGEX_PREFIX.length()), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                this.like = null;
+                return;
+            }
+            StringBuilder regex = new StringBuilder(expression.length() + 8);
+            StringBuilder like = new StringBuilder(expression.length() + 4);
+            for (char c : expression.toLowerCase(Locale.ROOT).toCharArray()) {
+                switch (c) {
+                    case '*':
+                        regex.append(".*");
+                        like.append('%');
+                        break;
+                    case '?':
+                        regex.append('.');
+                        like.append('_');
+                        break;
+                    case '%':
+                    case '_':
+                    case '\\':
+                        regex.append(Pattern.quote(String.valueOf(c)));
+                        like.append('\\').append(c);
+                        break;
+                    default:
+                        regex.append(Pattern.quote(String.valueOf(c)));
+                        like.append(c);
+                }
+            }
+            this.pattern = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            this.like = like.toString();
+        }
+
+        boolean matches(String name) {
+            return pattern.matcher(name).matches();
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package com.wind.compare.datasource.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONReader;
+import com.wind.compare.datasource.enums.DatasourceDriveType;
+import com.wind.compare.datasource.enums.SnapshotFormat;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 快照读写：JSON 文本 / 二进制两种格式，读取时按文件头自动识别
+ * 二进制格式：
+ * <pre>
+ * 文件头: "CDSB"(4字节) + 版本号(1字节) + 标记位(1字节，bit0=Deflate压缩)
+ * 内容:   按固定顺序写出各个属性，不写属性名；
+ *         字符串首次出现时写原文并加入字典，再次出现只写字典下标(类型、排序规则、引擎、字段名等大量重复)；
+ *         整数用变长编码
+ * </pre>
+ * 以后新增属性时在末尾追加并升级版本号，读取时按版本号判断是否有该属性
+ * @author wind.tan
+ * @date 2024-05-23
+ */
+public class SnapshotUtils {
+
+    private static final byte[] BINARY_MAGIC = {'C', 'D', 'S', 'B'};
+    /**
+     * 当前二进制格式版本
+     */
+    public static final int BINARY_VERSION = 1;
+    private static final int FLAG_DEFLATE = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 字符串标记：空、原文(加入字典)、原文(不加入字典)，大于等于 STRING_REF 的是字典下标
+     */
+    private static final int STRING_NULL = 0;
+    private static final int STRING_NEW = 1;
+    private static final int STRING_RAW = 2;
+    private static final int STRING_REF = 3;
+    /**
+     * 超过该长度的字符串(一般是注释)基本不会重复，不放入字典
+     */
+    private static final int MAX_DICTIONARY_STRING_LENGTH = 128;
+
+    /**
+     * 写出快照
+     * @param out           输出流(不会关闭)
+     * @param sqlTableJSON  快照
+     * @param format        格式
+     * @param compress      二进制格式是否压缩
+     * @throws IOException
+     */
+    public static void writeSnapshot(OutputStream out, SQLTableJSON sqlTableJSON, SnapshotFormat format, boolean compress) throws IOException {
+        if (format == SnapshotFormat.JSON){
+            JSON.writeJSONString(out, sqlTableJSON);
+            return;
+        }
+        out.write(BINARY_MAGIC);
+        out.write(BINARY_VERSION);
+        out.write(compress ? FLAG_DEFLATE : 0);
+        if (!compress){
+            new BinaryWriter(out).writeSnapshot(sqlTableJSON);
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            new BinaryWriter(deflaterOut).writeSnapshot(sqlTableJSON);
+            deflaterOut.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 读取快照，自动识别 JSON / 二进制格式
+     * @param in    输入流(不会关闭)
+     * @return
+     * @throws IOException
+     */
+    public static SQLTableJSON readSnapshot(InputStream in) throws IOException {
+        BufferedInputStream bufferedIn = new BufferedInputStream(in, BUFFER_SIZE);
+        bufferedIn.mark(BINARY_MAGIC.length);
+        byte[] magic = bufferedIn.readNBytes(BINARY_MAGIC.length);
+        if (!Arrays.equals(magic, BINARY_MAGIC)){
+            bufferedIn.reset();
+            // JSONReader 边读边解析，不会先把整个文件读成字节数组/字符串(不能关闭，关闭会关掉输入流)
+            JSONReader reader = new JSONReader(new InputStreamReader(bufferedIn, StandardCharsets.UTF_8));
+            return reader.readObject(SQLTableJSON.class);
+        }
+        int version = bufferedIn.read();
+        int flags = bufferedIn.read();
+        if (version != BINARY_VERSION){
+            throw new IOException("不支持的快照版本:" + version + "，请升级工具后再解析");
+        }
+        if ((flags & FLAG_DEFLATE) == 0){
+            return new BinaryReader(bufferedIn).readSnapshot();
+        }
+        Inflater inflater = new Inflater();
+        try {
+            return new BinaryReader(new InflaterInputStream(bufferedIn, inflater, BUFFER_SIZE)).readSnapshot();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 二进制写入(自带缓冲区，不使用 DataOutputStream)
+     */
+    private static class BinaryWriter {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        private BinaryWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        private void writeSnapshot(SQLTableJSON sqlTableJSON) throws IOException {
+            writeString(sqlTableJSON.getConnectionAlias());
+            SQLTableJSON.ConnectionConfig config = sqlTableJSON.getConnectionConfig();
+            writeBoolean(config == null ? null : Boolean.TRUE);
+            if (config != null){
+                writeString(config.getDatasourceType() == null ? null : config.getDatasourceType().name());
+                writeString(config.getIp());
+                writeNullableLong(config.getPort() == null ? null : config.getPort().longValue());
+                writeString(config.getUsername());
+                writeString(config.getPassword());
+            }
+            Map<String, Schema> schemaMap = sqlTableJSON.getSchemaMap();
+            writeSize(schemaMap == null ? -1 : schemaMap.size());
+            if (schemaMap != null){
+                for (Map.Entry<String, Schema> entry : schemaMap.entrySet()) {
+                    writeString(entry.getKey());
+                    writeSchema(entry.getValue());
+                }
+            }
+            flush();
+        }
+
+        private void writeSchema(Schema schema) throws IOException {
+            writeString(schema.getSchemaName());
+            writeString(schema.getDefaultCharacterName());
+            writeNullableLong(schema.getFingerprint());
+            Map<String, Table> tableMap = schema.getTableMap();
+            writeSize(tableMap == null ? -1 : tableMap.size());
+            if (tableMap != null){
+                for (Map.Entry<String, Table> entry : tableMap.entrySet()) {
+                    writeString(entry.getKey());
+                    writeTable(entry.getValue());
+                }
+            }
+        }
+
+        private void writeTable(Table table) throws IOException {
+            writeString(table.getTableName());
+            writeString(table.getTableEngine());
+            writeString(table.getCharset());
+            writeString(table.getTableCollation());
+            writeString(table.getTableComment());
+            writeNullableLong(table.getCreateTime() == null ? null : table.getCreateTime().getTime());
+            writeNullableLong(table.getUpdateTime() == null ? null : table.getUpdateTime().getTime());
+            writeNullableLong(table.getFingerprint());
+            List<Column> columnList = table.getColumnList();
+            writeSize(columnList == null ? -1 : columnList.size());
+            if (columnList != null){
+                for (Column column : columnList) {
+                    writeString(column.getColumnName());
+                    writeString(column.getColumnType());
+                    writeBoolean(column.getIsNullable());
+                    writeString(column.getColumnDefault());
+                    writeString(column.getColumnComment());
+                    writeString(column.getColumnKey());
+                    writeString(column.getExtra());
+                }
+            }
+            List<Index> indexList = table.getIndexList();
+            writeSize(indexList == null ? -1 : indexList.size());
+            if (indexList != null){
+                for (Index index : indexList) {
+                    writeString(index.getConstraintType());
+                    writeString(index.getIndexName());
+                    List<String> indexColumnList = index.getIndexColumnList();
+                    writeSize(indexColumnList == null ? -1 : indexColumnList.size());
+                    if (indexColumnList != null){
+                        for (String columnName : indexColumnList) {
+                            writeString(columnName);
+                        }
+                    }
+                    writeString(index.getIndexType());
+                    writeString(index.getIndexComment());
+                }
+            }
+            // 原生建表语句
+            writeString(table.getCreateSql());
+            writeNullableLong(table.getCreateSqlHash());
+            // 表大小
+            writeNullableLong(table.getTableRows());
+            writeNullableLong(table.getDataLength());
+            writeNullableLong(table.getIndexLength());
+            // 结构校验值
+            writeNullableLong(table.getStructureChecksum());
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null){
+                writeVarLong(STRING_NULL);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index != null){
+                writeVarLong(STRING_REF + (long) index);
+                return;
+            }
+            if (value.length() <= MAX_DICTIONARY_STRING_LENGTH){
+                dictionary.put(value, dictionary.size());
+                writeVarLong(STRING_NEW);
+            } else {
+                writeVarLong(STRING_RAW);
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            if (bytes.length > buffer.length - position){
+                flush();
+                if (bytes.length > buffer.length){
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        /**
+         * 集合大小，-1 表示空集合对象(null)
+         */
+        private void writeSize(int size) throws IOException {
+            writeVarLong(size + 1L);
+        }
+
+        private void writeBoolean(Boolean value) throws IOException {
+            writeByte(value == null ? 0 : value ? 2 : 1);
+        }
+
+        private void writeNullableLong(Long value) throws IOException {
+            if (value == null){
+                writeByte(0);
+                return;
+            }
+            writeByte(1);
+            // ZigZag 编码，负数也能用变长编码
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0){
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeByte(int value) throws IOException {
+            if (position == buffer.length){
+                flush();
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * 二进制读取(自带缓冲区，不使用 DataInputStream)
+     */
+    private static class BinaryReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private final List<String> dictionary = new ArrayList<>();
+
+        private BinaryReader(InputStream in) {
+            this.in = in;
+        }
+
+        private SQLTableJSON readSnapshot() throws IOException {
+            SQLTableJSON sqlTableJSON = new SQLTableJSON();
+            sqlTableJSON.setConnectionAlias(readString());
+            if (readBoolean() != null){
+                String datasourceType = readString();
+                String ip = readString();
+                Long port = readNullableLong();
+                sqlTableJSON.setConnectionConfig(datasourceType == null ? null : DatasourceDriveType.valueOf(datasourceType),
+                        ip, port == null ? null : port.intValue(), readString(), readString());
+            }
+            int schemaCount = readSize();
+            if (schemaCount >= 0){
+                Map<String, Schema> schemaMap = new HashMap<>(capacity(schemaCount));
+                for (int i = 0; i < schemaCount; i++) {
+                    schemaMap.put(readString(), readSchema());
+                }
+                sqlTableJSON.setSchemaMap(schemaMap);
+            }
+            return sqlTableJSON;
+        }
+
+        private Schema readSchema() throws IOException {
+            Schema schema = new Schema();
+            schema.setSchemaName(readString());
+            schema.setDefaultCharacterName(readString());
+            schema.setFingerprint(readNullableLong());
+            int tableCount = readSize();
+            if (tableCount >= 0){
+                Map<String, Table> tableMap = new HashMap<>(capacity(tableCount));
+                for (int i = 0; i < tableCount; i++) {
+                    tableMap.put(readString(), readTable());
+                }
+                schema.setTableMap(tableMap);
+            }
+            return schema;
+        }
+
+        private Table readTable() throws IOException {
+            Table table = new Table();
+            table.setTableName(readString());
+            table.setTableEngine(readString());
+            table.setCharset(readString());
+            table.setTableCollation(readString());
+            table.setTableComment(readString());
+            table.setCreateTime(toDate(readNullableLong()));
+            table.setUpdateTime(toDate(readNullableLong()));
+            table.setFingerprint(readNullableLong());
+            int columnCount = readSize();
+            if (columnCount >= 0){
+                List<Column> columnList = new ArrayList<>(columnCount);
+                for (int i = 0; i < columnCount; i++) {
+                    Column column = new Column();
+                    column.setColumnName(readString());
+                    column.setColumnType(readString());
+                    column.setIsNullable(readBoolean());
+                    column.setColumnDefault(readString());
+                    column.setColumnComment(readString());
+                    column.setColumnKey(readString());
+                    column.setExtra(readString());
+                    columnList.add(column);
+                }
+                table.setColumnList(columnList);
+            }
+            int indexCount = readSize();
+            if (indexCount >= 0){
+                List<Index> indexList = new ArrayList<>(indexCount);
+                for (int i = 0; i < indexCount; i++) {
+                    Index index = new Index();
+                    index.setConstraintType(readString());
+                    index.setIndexName(readString());
+                    int indexColumnCount = readSize();
+                    if (indexColumnCount >= 0){
+                        List<String> indexColumnList = new ArrayList<>(indexColumnCount);
+                        for (int j = 0; j < indexColumnCount; j++) {
+                            indexColumnList.add(readString());
+                        }
+                        index.setIndexColumnList(indexColumnList);
+                    }
+                    index.setIndexType(readString());
+                    index.setIndexComment(readString());
+                    indexList.add(index);
+                }
+                table.setIndexList(indexList);
+            }
+            table.setCreateSql(readString());
+            table.setCreateSqlHash(readNullableLong());
+            table.setTableRows(readNullableLong());
+            table.setDataLength(readNullableLong());
+            table.setIndexLength(readNullableLong());
+            table.setStructureChecksum(readNullableLong());
+            return table;
+        }
+
+        private String readString() throws IOException {
+            long tag = readVarLong();
+            if (tag == STRING_NULL){
+                return null;
+            }
+            if (tag >= STRING_REF){
+                long index = tag - STRING_REF;
+                if (index >= dictionary.size()){
+                    throw new IOException("快照内容错误：字典下标越界");
+                }
+                return dictionary.get((int) index);
+            }
+            int length = (int) readVarLong();
+            String value;
+            if (length <= limit - position){
+                value = new String(buffer, position, length, StandardCharsets.UTF_8);
+                position += length;
+            } else {
+                byte[] bytes = new byte[length];
+                for (int offset = 0; offset < length; ) {
+                    if (position == limit){
+                        fill();
+                    }
+                    int count = Math.min(length - offset, limit - position);
+                    System.arraycopy(buffer, position, bytes, offset, count);
+                    position += count;
+                    offset += count;
+                }
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            if (tag == STRING_NEW){
+                dictionary.add(value);
+            }
+            return value;
+        }
+
+        private int readSize() throws IOException {
+            return (int) readVarLong() - 1;
+        }
+
+        private Boolean readBoolean() throws IOException {
+            int value = readByte();
+            return value == 0 ? null : value == 2;
+        }
+
+        private Long readNullableLong() throws IOException {
+            if (readByte() == 0){
+                return null;
+            }
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0){
+                    return value;
+                }
+            }
+            throw new IOException("快照内容错误：变长整数过长");
+        }
+
+        private int readByte() throws IOException {
+            if (position == limit){
+                fill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private void fill() throws IOException {
+            int n = in.read(buffer);
+            if (n <= 0){
+                throw new EOFException("快照内容不完整");
+            }
+            position = 0;
+            limit = n;
+        }
+
+        private static Date toDate(Long time) {
+            return time == null ? null : new Date(time);
+        }
+
+        private static int capacity(int size) {
+            return (int) (size / 0.75f) + 1;
+        }
+    }
+}
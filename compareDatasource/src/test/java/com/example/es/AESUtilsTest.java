@@ -0,0 +1,82 @@
+package com.example.es;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.utils.AESUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AES 流式加解密测试
+ */
+class AESUtilsTest {
+
+    private static final String PASSWORD = "test-password";
+
+    @Test
+    void streamRoundTripTest() throws IOException {
+        SQLTableJSON sqlTableJson = DiffEngineTest.buildSqlTableJson(3, 200);
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream out = AESUtils.encryptOutputStream(encrypted, PASSWORD)){
+            JSON.writeJSONString(out, sqlTableJson);
+        }
+        String content = encrypted.toString(StandardCharsets.US_ASCII);
+        assertTrue(content.startsWith(AESUtils.STREAM_HEADER));
+        // Base64 比旧版本的十六进制密文小
+        assertTrue(content.length() < AESUtils.encode(JSON.toJSONString(sqlTableJson), PASSWORD).length());
+
+        // 中间被编辑器插入换行也能解析
+        String wrapped = AESUtils.STREAM_HEADER + content.substring(AESUtils.STREAM_HEADER.length()).replaceAll("(.{76})", "$1\r\n");
+        for (String file : new String[]{content, wrapped}) {
+            try (InputStream in = AESUtils.decryptInputStream(new ByteArrayInputStream(file.getBytes(StandardCharsets.US_ASCII)), PASSWORD)){
+                SQLTableJSON parsed = JSON.parseObject(in, StandardCharsets.UTF_8, SQLTableJSON.class);
+                assertEquals(JSON.toJSONString(sqlTableJson), JSON.toJSONString(parsed));
+            }
+        }
+    }
+
+    @Test
+    void legacyHexFileTest() throws IOException {
+        String json = JSON.toJSONString(DiffEngineTest.buildSqlTableJson(1, 10));
+        // 旧版本下载的文件：十六进制密文，可能带引号和换行
+        String hex = AESUtils.encode(json, PASSWORD);
+        String legacy = "\"" + hex + "\"\n";
+        try (InputStream in = AESUtils.decryptInputStream(new ByteArrayInputStream(legacy.getBytes(StandardCharsets.US_ASCII)), PASSWORD)){
+            // 与旧版本 decode 的结果一致
+            assertEquals(AESUtils.decode(hex, PASSWORD), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void emptyLegacyFileTest() {
+        byte[] empty = "\"\"\r\n".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = AESUtils.decryptInputStream(new ByteArrayInputStream(empty), PASSWORD)){
+                in.readAllBytes();
+            }
+        });
+    }
+
+    @Test
+    void wrongPasswordTest() throws IOException {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream out = AESUtils.encryptOutputStream(encrypted, PASSWORD)){
+            out.write("{\"connectionAlias\":\"test\"}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = AESUtils.decryptInputStream(new ByteArrayInputStream(encrypted.toByteArray()), "other-password")){
+                in.readAllBytes();
+            }
+        });
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.es;
+
+import com.wind.compare.datasource.catalog.CatalogReader;
+import com.wind.compare.datasource.config.CompareMetrics;
+import com.wind.compare.datasource.config.DataSourceRegistry;
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.enums.DatasourceDriveType;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.pojo.job.JobProgress;
+import com.wind.compare.datasource.service.impl.CompareDataSourceServiceImpl;
+import com.wind.compare.datasource.utils.ScopeFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用 H2 内存库验证元数据读取器：库表清单、字段、索引的批量读取，以及读出来的结构可以直接对比
+ */
+class CatalogReaderTest {
+
+    private static final CatalogReader READER = DatasourceDriveType.H2.getCatalogReader();
+
+    private static JdbcTemplate baseJdbcTemplate;
+    private static JdbcTemplate compareJdbcTemplate;
+
+    @BeforeAll
+    static void init() {
+        baseJdbcTemplate = createDatabase("catalog_base");
+        compareJdbcTemplate = createDatabase("catalog_compare");
+        // 对比库：少一个字段、少一个索引
+        compareJdbcTemplate.execute("ALTER TABLE SHOP.ORDERS DROP COLUMN REMARK");
+        compareJdbcTemplate.execute("DROP INDEX SHOP.IDX_AMOUNT");
+    }
+
+    @AfterAll
+    static void destroy() {
+        baseJdbcTemplate.execute("DROP ALL OBJECTS");
+        compareJdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void readCatalogTest() {
+        SQLTableJSON sqlTableJSON = read(baseJdbcTemplate, ScopeFilter.ALL);
+        assertEquals(2, sqlTableJSON.getSchemaMap().size());
+        Schema shop = sqlTableJSON.getSchemaMap().get("SHOP");
+        assertEquals(2, shop.getTableMap().size());
+        // 视图不算表
+        assertFalse(shop.getTableMap().containsKey("ORDER_VIEW"));
+
+        Table orders = shop.getTableMap().get("ORDERS");
+        assertEquals("订单", orders.getTableComment());
+        // H2 只有估算行数，拿不到数据、索引大小
+        assertEquals(0L, orders.getTableRows());
+        assertNull(orders.getDataLength());
+        List<Column> columnList = orders.getColumnList();
+        assertEquals(List.of("ID", "CODE", "AMOUNT", "REMARK"), columnList.stream().map(Column::getColumnName).toList());
+        assertEquals("auto_increment", columnList.get(0).getExtra());
+        assertEquals("CHARACTER VARYING(32)", columnList.get(1).getColumnType());
+        assertFalse(columnList.get(1).getIsNullable());
+        // 字符串默认值去掉引号
+        assertEquals("N/A", columnList.get(1).getColumnDefault());
+        assertEquals("编号", columnList.get(1).getColumnComment());
+        assertEquals("NUMERIC(10,2)", columnList.get(2).getColumnType());
+        assertNull(columnList.get(3).getColumnDefault());
+
+        // 联合索引的字段按顺序拼接，主键统一命名为 PRIMARY
+        List<Index> indexList = orders.getIndexList();
+        assertEquals(List.of("IDX_AMOUNT", "PRIMARY", "UK_CODE"), indexList.stream().map(Index::getIndexName).toList());
+        assertEquals("PRIMARY KEY", indexList.get(1).getConstraintType());
+        assertEquals("UNIQUE", indexList.get(2).getConstraintType());
+        assertEquals(List.of("CODE", "AMOUNT"), indexList.get(2).getIndexColumnList());
+        assertNull(indexList.get(0).getConstraintType());
+    }
+
+    @Test
+    void scopeAndDiffTest() {
+        // 范围过滤在读取表清单时生效
+        ScopeFilter scopeFilter = ScopeFilter.of(Collections.singletonList("shop"), null, null, Collections.singletonList("regex:.*_ITEM$"));
+        SQLTableJSON scoped = read(baseJdbcTemplate, scopeFilter);
+        assertEquals(Collections.singleton("SHOP"), scoped.getSchemaMap().keySet());
+        assertEquals(Collections.singleton("ORDERS"), scoped.getSchemaMap().get("SHOP").getTableMap().keySet());
+
+        // 两个库读出来的结构可以直接交给对比引擎
+        List<String> sqlList = new DiffEngine(null).compareDiffDataSource(read(baseJdbcTemplate, ScopeFilter.ALL), read(compareJdbcTemplate, ScopeFilter.ALL));
+        assertEquals(1, sqlList.size());
+        assertTrue(sqlList.get(0).contains("REMARK"));
+        assertTrue(sqlList.get(0).contains("IDX_AMOUNT"));
+    }
+
+    @Test
+    void incrementalExtractTest() throws Exception {
+        JdbcTemplate jdbcTemplate = createDatabase("catalog_incremental");
+        DatasourceSettingDto setting = DatasourceSettingDto.builder().datasource(DatasourceDriveType.H2).ip("127.0.0.1").port(9092).username("sa").build();
+        CompareDataSourceServiceImpl service = extractService(setting, jdbcTemplate);
+        try {
+            SQLTableJSON full = service.generateJsonTable(setting);
+            Map<String, Table> fullTableMap = full.getSchemaMap().get("SHOP").getTableMap();
+            assertNotNull(fullTableMap.get("ORDERS").getStructureChecksum());
+
+            // 只写数据、结构不变：全部复用上一次的字段、索引
+            jdbcTemplate.execute("INSERT INTO SHOP.ORDER_ITEM VALUES (1, 1)");
+            SQLTableJSON reused = service.generateJsonTable(setting, full);
+            Map<String, Table> reusedTableMap = reused.getSchemaMap().get("SHOP").getTableMap();
+            assertSame(fullTableMap.get("ORDERS").getColumnList(), reusedTableMap.get("ORDERS").getColumnList());
+            assertSame(fullTableMap.get("ORDER_ITEM").getColumnList(), reusedTableMap.get("ORDER_ITEM").getColumnList());
+
+            // 只改默认值(MySQL 8 的 INSTANT ALTER 不刷新 CREATE_TIME)：结构校验值变化，重新查询这张表
+            jdbcTemplate.execute("ALTER TABLE SHOP.ORDERS ALTER COLUMN REMARK SET DEFAULT 'none'");
+            SQLTableJSON changed = service.generateJsonTable(setting, reused);
+            Map<String, Table> changedTableMap = changed.getSchemaMap().get("SHOP").getTableMap();
+            assertNotSame(reusedTableMap.get("ORDERS").getColumnList(), changedTableMap.get("ORDERS").getColumnList());
+            assertEquals("none", changedTableMap.get("ORDERS").getColumnList().get(3).getColumnDefault());
+            assertNotEquals(reusedTableMap.get("ORDERS").getStructureChecksum(), changedTableMap.get("ORDERS").getStructureChecksum());
+            assertSame(reusedTableMap.get("ORDER_ITEM").getColumnList(), changedTableMap.get("ORDER_ITEM").getColumnList());
+
+            // 新增索引同样重新查询
+            jdbcTemplate.execute("CREATE INDEX IDX_ORDER_ID ON SHOP.ORDER_ITEM(ORDER_ID)");
+            SQLTableJSON indexed = service.generateJsonTable(setting, changed);
+            Table orderItem = indexed.getSchemaMap().get("SHOP").getTableMap().get("ORDER_ITEM");
+            assertTrue(orderItem.getIndexList().stream().anyMatch(index -> "IDX_ORDER_ID".equals(index.getIndexName())));
+            assertSame(changedTableMap.get("ORDERS").getColumnList(), indexed.getSchemaMap().get("SHOP").getTableMap().get("ORDERS").getColumnList());
+        } finally {
+            jdbcTemplate.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    void jdbcUrlTest() {
+        DatasourceSettingDto setting = DatasourceSettingDto.builder().ip("127.0.0.1").port(5432).build();
+        assertEquals("jdbc:postgresql://127.0.0.1:5432/postgres", DatasourceDriveType.POSTGRESQL.getCatalogReader().jdbcUrl(setting));
+        setting.setDatabase("erp");
+        assertEquals("jdbc:postgresql://127.0.0.1:5432/erp", DatasourceDriveType.POSTGRESQL.getCatalogReader().jdbcUrl(setting));
+        assertEquals("jdbc:h2:tcp://127.0.0.1:5432/erp", DatasourceDriveType.H2.getCatalogReader().jdbcUrl(setting));
+        assertTrue(DatasourceDriveType.MARIADB.getCatalogReader().jdbcUrl(setting).startsWith("jdbc:mariadb://127.0.0.1:5432"));
+        assertEquals(DatasourceDriveType.MARIADB, DatasourceDriveType.getDataSourceByType("mariadb"));
+    }
+
+    @Test
+    void extractBatchesTest() throws Exception {
+        JdbcTemplate jdbcTemplate = createDatabase("catalog_batches");
+        for (int i = 0; i < 8; i++) {
+            jdbcTemplate.execute("CREATE TABLE SHOP.T_" + i + "(ID BIGINT PRIMARY KEY)");
+        }
+        DatasourceSettingDto setting = DatasourceSettingDto.builder().datasource(DatasourceDriveType.H2).ip("127.0.0.1").port(9092).username("sa").build();
+        CompareDataSourceServiceImpl service = extractService(setting, jdbcTemplate);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ReflectionTestUtils.setField(service, "searchSqlThreadPool", executor);
+        try {
+            // 只读取表清单，字段、索引由分批抽取写入
+            // SHOP 10张表、PUBLIC 1张表，每批3张：3+3+3+1、1，一个批次只属于一个库
+            SQLTableJSON sqlTableJSON = readTables(jdbcTemplate);
+            Map<String, List<String>> pendingTableMap = pendingTableMap(sqlTableJSON);
+            List<?> batchList = ReflectionTestUtils.invokeMethod(service, "splitTableBatches", pendingTableMap, 3);
+            assertEquals(5, batchList.size());
+
+            // 并发数 8，目标库连接池只有 2 个连接：最多 2 个工作线程
+            RecordingCatalogReader reader = new RecordingCatalogReader(false);
+            JobProgress progress = extract(service, reader, jdbcTemplate, sqlTableJSON, batchList, 8);
+            assertEquals(List.of(1, 1, 3, 3, 3), reader.batchSizeList.stream().sorted().toList());
+            assertTrue(reader.threadNameSet.size() <= 2);
+            assertTrue(reader.maxRunning.get() <= 2);
+            assertEquals(11, progress.getProcessedTables());
+            assertEquals(2, progress.getProcessedSchemas());
+            assertEquals(1, sqlTableJSON.getSchemaMap().get("SHOP").getTableMap().get("T_7").getColumnList().size());
+
+            // 并发数为 1
+            reader = new RecordingCatalogReader(false);
+            extract(service, reader, jdbcTemplate, readTables(jdbcTemplate), batchList, 1);
+            assertEquals(1, reader.threadNameSet.size());
+
+            // 只有 1 个批次时只起 1 个工作线程
+            SQLTableJSON single = readTables(jdbcTemplate);
+            List<?> singleBatchList = ReflectionTestUtils.invokeMethod(service, "splitTableBatches", Map.of("PUBLIC", List.of("SETTINGS")), 3);
+            reader = new RecordingCatalogReader(false);
+            extract(service, reader, jdbcTemplate, single, singleBatchList, 8);
+            assertEquals(1, reader.threadNameSet.size());
+
+            // 第一个批次失败后其他工作线程不再领取新批次
+            RecordingCatalogReader failReader = new RecordingCatalogReader(true);
+            SQLTableJSON failed = readTables(jdbcTemplate);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> extract(service, failReader, jdbcTemplate, failed, batchList, 8));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertTrue(failReader.batchSizeList.size() <= 2);
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    /**
+     * 调用抽取服务的分批抽取
+     */
+    private static JobProgress extract(CompareDataSourceServiceImpl service, CatalogReader reader, JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, List<?> batchList, int parallelism) throws Exception {
+        JobProgress progress = new JobProgress();
+        Map<String, AtomicInteger> pendingCountMap = ReflectionTestUtils.invokeMethod(service, "pendingCountMap", pendingTableMap(sqlTableJSON));
+        try {
+            ReflectionTestUtils.invokeMethod(service, "extractTableBatches", reader, jdbcTemplate, sqlTableJSON, batchList, parallelism, false, pendingCountMap, progress);
+        } catch (UndeclaredThrowableException e) {
+            throw (Exception) e.getCause();
+        }
+        return progress;
+    }
+
+    private static SQLTableJSON readTables(JdbcTemplate jdbcTemplate) {
+        SQLTableJSON sqlTableJSON = new SQLTableJSON().setConnectionAlias("h2");
+        sqlTableJSON.setSchemaMap(READER.readTables(jdbcTemplate, ScopeFilter.ALL));
+        return sqlTableJSON;
+    }
+
+    private static Map<String, List<String>> pendingTableMap(SQLTableJSON sqlTableJSON) {
+        Map<String, List<String>> pendingTableMap = new TreeMap<>();
+        sqlTableJSON.getSchemaMap().forEach((schemaName, schema) -> pendingTableMap.put(schemaName, new ArrayList<>(new TreeSet<>(schema.getTableMap().keySet()))));
+        return pendingTableMap;
+    }
+
+    private static SQLTableJSON read(JdbcTemplate jdbcTemplate, ScopeFilter scopeFilter) {
+        SQLTableJSON sqlTableJSON = new SQLTableJSON().setConnectionAlias("h2");
+        Map<String, Schema> schemaMap = READER.readTables(jdbcTemplate, scopeFilter);
+        sqlTableJSON.setSchemaMap(schemaMap);
+        for (Schema schema : schemaMap.values()) {
+            // 每批1张表，同时验证分块查询
+            List<String> tableNameList = new ArrayList<>(schema.getTableMap().keySet());
+            READER.readColumns(jdbcTemplate, sqlTableJSON, schema.getSchemaName(), tableNameList, 1);
+            READER.readIndexes(jdbcTemplate, sqlTableJSON, schema.getSchemaName(), tableNameList, 1);
+        }
+        return sqlTableJSON;
+    }
+
+    /**
+     * 抽取服务：连接池换成 H2 内存库，其余按默认配置
+     */
+    private static CompareDataSourceServiceImpl extractService(DatasourceSettingDto setting, JdbcTemplate jdbcTemplate) {
+        DataSourceRegistry dataSourceRegistry = mock(DataSourceRegistry.class);
+        DataSourceRegistry.Lease lease = mock(DataSourceRegistry.Lease.class);
+        when(lease.getJdbcTemplate()).thenReturn(jdbcTemplate);
+        when(dataSourceRegistry.acquire(setting)).thenReturn(lease);
+        when(dataSourceRegistry.getMaxPoolSize()).thenReturn(2);
+        CompareDataSourceServiceImpl service = new CompareDataSourceServiceImpl();
+        ReflectionTestUtils.setField(service, "dataSourceRegistry", dataSourceRegistry);
+        ReflectionTestUtils.setField(service, "searchSqlThreadPool", ForkJoinPool.commonPool());
+        ReflectionTestUtils.setField(service, "compareMetrics", new CompareMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "defaultParallelism", 2);
+        ReflectionTestUtils.setField(service, "defaultBatchSize", 1);
+        ReflectionTestUtils.setField(service, "maxInSize", 1000);
+        return service;
+    }
+
+    private static JdbcTemplate createDatabase(String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE SCHEMA SHOP");
+        jdbcTemplate.execute("CREATE TABLE SHOP.ORDERS(ID BIGINT AUTO_INCREMENT PRIMARY KEY, CODE VARCHAR(32) DEFAULT 'N/A' NOT NULL, AMOUNT DECIMAL(10,2), REMARK VARCHAR(255))");
+        jdbcTemplate.execute("COMMENT ON TABLE SHOP.ORDERS IS '订单'");
+        jdbcTemplate.execute("COMMENT ON COLUMN SHOP.ORDERS.CODE IS '编号'");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX UK_CODE ON SHOP.ORDERS(CODE, AMOUNT)");
+        jdbcTemplate.execute("CREATE INDEX IDX_AMOUNT ON SHOP.ORDERS(AMOUNT)");
+        jdbcTemplate.execute("CREATE TABLE SHOP.ORDER_ITEM(ID BIGINT PRIMARY KEY, ORDER_ID BIGINT NOT NULL)");
+        jdbcTemplate.execute("CREATE VIEW SHOP.ORDER_VIEW AS SELECT ID FROM SHOP.ORDERS");
+        jdbcTemplate.execute("CREATE TABLE PUBLIC.SETTINGS(NAME VARCHAR(64) PRIMARY KEY)");
+        return jdbcTemplate;
+    }
+
+    /**
+     * 记录每次读取字段的批次大小、线程、同时执行的数量；fail 为 true 时第一次读取直接失败
+     */
+    private static class RecordingCatalogReader implements CatalogReader {
+        private final boolean fail;
+        private final List<Integer> batchSizeList = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> threadNameSet = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        private RecordingCatalogReader(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public String jdbcUrl(DatasourceSettingDto datasourceSetting) {
+            return READER.jdbcUrl(datasourceSetting);
+        }
+
+        @Override
+        public Map<String, Schema> readTables(JdbcTemplate jdbcTemplate, ScopeFilter scopeFilter) {
+            return READER.readTables(jdbcTemplate, scopeFilter);
+        }
+
+        @Override
+        public long readColumns(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList, int maxInSize) {
+            boolean first;
+            synchronized (batchSizeList) {
+                first = batchSizeList.isEmpty();
+                batchSizeList.add(tableNameList.size());
+            }
+            threadNameSet.add(Thread.currentThread().getName());
+            if (fail && first){
+                throw new IllegalStateException("第一个批次失败");
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                // 拉长单个批次，让工作线程有机会同时执行
+                TimeUnit.MILLISECONDS.sleep(50);
+                return READER.readColumns(jdbcTemplate, sqlTableJSON, schemaName, tableNameList, maxInSize);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public long readIndexes(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName, List<String> tableNameList, int maxInSize) {
+            return READER.readIndexes(jdbcTemplate, sqlTableJSON, schemaName, tableNameList, maxInSize);
+        }
+
+        @Override
+        public long readStructureChecksums(JdbcTemplate jdbcTemplate, SQLTableJSON sqlTableJSON, String schemaName) {
+            return READER.readStructureChecksums(jdbcTemplate, sqlTableJSON, schemaName);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.es;
+
+import com.wind.compare.datasource.utils.ChunkedQueryUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用 H2 内存库模拟 information_schema.COLUMNS，验证 5万张表按 (库,表) 分块绑定参数查询
+ */
+class ChunkedQueryUtilsTest {
+
+    private static final int TABLE_COUNT = 50_000;
+    private static final int CHUNK_SIZE = 1000;
+    private static final String SQL_TEMPLATE = "SELECT col.TABLE_SCHEMA, col.TABLE_NAME, col.COLUMN_NAME\n" +
+            "FROM META.COLUMNS col\n" +
+            "WHERE col.TABLE_SCHEMA = ?\n" +
+            "AND col.TABLE_NAME IN (" + ChunkedQueryUtils.IN_PLACEHOLDER + ")\n" +
+            "ORDER BY col.TABLE_SCHEMA, col.TABLE_NAME, col.ORDINAL_POSITION";
+
+    private static JdbcTemplate jdbcTemplate;
+    private static List<String> tableNameList;
+
+    @BeforeAll
+    static void init() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:chunked_query;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE SCHEMA META");
+        jdbcTemplate.execute("CREATE TABLE META.COLUMNS(TABLE_SCHEMA VARCHAR(64), TABLE_NAME VARCHAR(64), COLUMN_NAME VARCHAR(64), ORDINAL_POSITION INT)");
+        tableNameList = new ArrayList<>(TABLE_COUNT);
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            tableNameList.add("t_" + i);
+        }
+        // 目标库每张表2个字段；other_db 是同名表，旧的 库IN × 表IN 交叉查询会把它们也查出来
+        for (String schemaName : new String[]{"target_db", "other_db"}) {
+            jdbcTemplate.update("INSERT INTO META.COLUMNS SELECT ?, CONCAT('t_', X), 'id', 1 FROM SYSTEM_RANGE(0, ?)", schemaName, TABLE_COUNT - 1);
+            jdbcTemplate.update("INSERT INTO META.COLUMNS SELECT ?, CONCAT('t_', X), 'name', 2 FROM SYSTEM_RANGE(0, ?)", schemaName, TABLE_COUNT - 1);
+        }
+        jdbcTemplate.execute("CREATE INDEX idx_columns ON META.COLUMNS(TABLE_NAME)");
+    }
+
+    @AfterAll
+    static void destroy() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void queryInChunksTest() {
+        AtomicInteger rowCount = new AtomicInteger();
+        Set<String> schemaSet = new HashSet<>();
+        Set<String> tableSet = new HashSet<>();
+        int chunkCount = ChunkedQueryUtils.queryInChunks(jdbcTemplate, SQL_TEMPLATE, Collections.singletonList("target_db"), tableNameList, CHUNK_SIZE, rs -> {
+            rowCount.incrementAndGet();
+            schemaSet.add(rs.getString("TABLE_SCHEMA"));
+            tableSet.add(rs.getString("TABLE_NAME"));
+        });
+        assertEquals(TABLE_COUNT / CHUNK_SIZE, chunkCount);
+        assertEquals(TABLE_COUNT * 2, rowCount.get());
+        assertEquals(Collections.singleton("target_db"), schemaSet);
+        assertEquals(TABLE_COUNT, tableSet.size());
+    }
+
+    @Test
+    void expandInClauseTest() {
+        assertEquals("IN (?,?,?)", ChunkedQueryUtils.expandInClause("IN ({IN})", 3));
+        // 单条SQL长度只和块大小有关，与表的总数量无关
+        String chunkSql = ChunkedQueryUtils.expandInClause(SQL_TEMPLATE, CHUNK_SIZE);
+        assertTrue(chunkSql.length() < SQL_TEMPLATE.length() + CHUNK_SIZE * 2);
+    }
+}
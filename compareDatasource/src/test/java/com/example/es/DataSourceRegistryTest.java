@@ -0,0 +1,131 @@
+package com.example.es;
+
+import com.wind.compare.datasource.config.CompareMetrics;
+import com.wind.compare.datasource.config.DataSourceRegistry;
+import com.wind.compare.datasource.enums.DatasourceDriveType;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.service.impl.CompareDataSourceServiceImpl;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 连接池注册表测试：租约期间连接池不被回收、连接池名不冲突
+ * 回收时间压到 1 毫秒，用 H2 TCP Server 模拟目标库
+ */
+class DataSourceRegistryTest {
+
+    private static final int TABLE_COUNT = 30;
+
+    private Server server;
+    private JdbcTemplate localJdbcTemplate;
+    private DataSourceRegistry registry;
+
+    @BeforeEach
+    void init() throws Exception {
+        localJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:registry;DB_CLOSE_DELAY=-1", "sa", ""));
+        localJdbcTemplate.execute("CREATE SCHEMA SHOP");
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            localJdbcTemplate.execute("CREATE TABLE SHOP.T_" + i + "(ID BIGINT PRIMARY KEY, NAME VARCHAR(32))");
+        }
+        server = Server.createTcpServer("-tcpPort", "0").start();
+
+        registry = new DataSourceRegistry();
+        ReflectionTestUtils.setField(registry, "maxPoolSize", 2);
+        ReflectionTestUtils.setField(registry, "connectionTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(registry, "idleTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(registry, "evictAfter", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(registry, "fetchSize", 100);
+        ReflectionTestUtils.setField(registry, "meterRegistry", new SimpleMeterRegistry());
+        registry.init();
+    }
+
+    @AfterEach
+    void destroy() {
+        registry.destroy();
+        server.stop();
+        localJdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void leaseBlocksEvictTest() throws Exception {
+        DataSourceRegistry.Lease lease = registry.acquire(setting("mem:registry"));
+        JdbcTemplate jdbcTemplate = lease.getJdbcTemplate();
+        HikariDataSource dataSource = (HikariDataSource) jdbcTemplate.getDataSource();
+        try {
+            // 两次查询之间没有活跃连接、也超过了回收时间，租约还在就不回收
+            for (int i = 0; i < 5; i++) {
+                assertEquals(1, jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+                TimeUnit.MILLISECONDS.sleep(5);
+                evictIdle();
+                assertFalse(dataSource.isClosed());
+            }
+        } finally {
+            lease.close();
+        }
+        // 重复关闭只归还一次
+        lease.close();
+        TimeUnit.MILLISECONDS.sleep(5);
+        evictIdle();
+        assertTrue(dataSource.isClosed());
+    }
+
+    @Test
+    void extractWhileEvictingTest() throws Exception {
+        CompareDataSourceServiceImpl service = new CompareDataSourceServiceImpl();
+        ReflectionTestUtils.setField(service, "dataSourceRegistry", registry);
+        ReflectionTestUtils.setField(service, "searchSqlThreadPool", ForkJoinPool.commonPool());
+        ReflectionTestUtils.setField(service, "compareMetrics", new CompareMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "defaultParallelism", 2);
+        ReflectionTestUtils.setField(service, "defaultBatchSize", 1);
+        ReflectionTestUtils.setField(service, "maxInSize", 1000);
+
+        // 抽取期间每毫秒尝试回收一次，每批1张表，批与批之间都有无活跃连接的空档
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor();
+        evictor.scheduleWithFixedDelay(this::evictIdle, 0, 1, TimeUnit.MILLISECONDS);
+        try {
+            for (int i = 0; i < 3; i++) {
+                SQLTableJSON sqlTableJSON = service.generateJsonTable(setting("mem:registry"));
+                assertEquals(TABLE_COUNT, sqlTableJSON.getSchemaMap().get("SHOP").getTableMap().size());
+                sqlTableJSON.getSchemaMap().get("SHOP").getTableMap().values().forEach(table -> assertEquals(2, table.getColumnList().size()));
+            }
+        } finally {
+            evictor.shutdownNow();
+        }
+    }
+
+    @Test
+    void uniquePoolNameTest() {
+        String poolName = ((HikariDataSource) registry.getJdbcTemplate(setting("mem:registry")).getDataSource()).getPoolName();
+        // 同一 ip、端口，不同库
+        String otherPoolName = ((HikariDataSource) registry.getJdbcTemplate(setting("mem:registry_other")).getDataSource()).getPoolName();
+        assertNotEquals(poolName, otherPoolName);
+        assertTrue(poolName.startsWith("compare_127.0.0.1_" + server.getPort() + "_sa_"));
+    }
+
+    private DatasourceSettingDto setting(String database) {
+        return DatasourceSettingDto.builder().datasource(DatasourceDriveType.H2).ip("127.0.0.1").port(server.getPort()).database(database).username("sa").password("").build();
+    }
+
+    private void evictIdle() {
+        ReflectionTestUtils.invokeMethod(registry, "evictIdle");
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.es;
+
+import com.wind.compare.datasource.diff.DdlRenderer;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.es.DiffEngineTest.column;
+import static com.example.es.DiffEngineTest.index;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * DDL 渲染测试：标识符加反引号、字面量转义、默认值、索引片段、没有索引的建表语句
+ */
+class DdlRendererTest {
+
+    @Test
+    void columnTest() throws IOException {
+        assertEquals("  `na``me` varchar(32) NOT NULL DEFAULT 'it''s \\\\ 默认' COMMENT 'a''b'",
+                render(sb -> DdlRenderer.appendColumn(sb, column("na`me", "varchar(32)", false, "it's \\ 默认", "", "a'b"))));
+        // 可为空且没有默认值
+        assertEquals("  `remark` text DEFAULT NULL COMMENT ''",
+                render(sb -> DdlRenderer.appendColumn(sb, column("remark", "text", true, null, null, null))));
+        // 数字、时间函数原样输出，DEFAULT_GENERATED 标记去掉
+        assertEquals("  `amount` decimal(10,2) NOT NULL DEFAULT -1.50 COMMENT '金额'",
+                render(sb -> DdlRenderer.appendColumn(sb, column("amount", "decimal(10,2)", false, "-1.50", "", "金额"))));
+        assertEquals("  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP on update CURRENT_TIMESTAMP COMMENT ''",
+                render(sb -> DdlRenderer.appendColumn(sb, column("update_time", "datetime", false, "CURRENT_TIMESTAMP", "DEFAULT_GENERATED on update CURRENT_TIMESTAMP", ""))));
+        // MySQL 8 表达式默认值加括号
+        assertEquals("  `uid` char(36) NOT NULL DEFAULT (uuid()) COMMENT ''",
+                render(sb -> DdlRenderer.appendColumn(sb, column("uid", "char(36)", false, "uuid()", "DEFAULT_GENERATED", ""))));
+    }
+
+    @Test
+    void indexTest() throws IOException {
+        assertEquals("  PRIMARY KEY (`id`) USING BTREE",
+                render(sb -> DdlRenderer.appendIndex(sb, index("PRIMARY", "PRIMARY KEY", "id"))));
+        Index unique = index("uk_name", "UNIQUE", "name", "code(10)");
+        unique.setIndexComment("名称'");
+        assertEquals("  UNIQUE KEY `uk_name` (`name`,`code`(10)) USING BTREE COMMENT '名称'''",
+                render(sb -> DdlRenderer.appendIndex(sb, unique)));
+        Index fulltext = index("ft_title", null, "title");
+        fulltext.setIndexType("FULLTEXT");
+        assertEquals("  FULLTEXT KEY `ft_title` (`title`)", render(sb -> DdlRenderer.appendIndex(sb, fulltext)));
+        assertEquals("DROP PRIMARY KEY", render(sb -> DdlRenderer.appendDropIndex(sb, index("PRIMARY", "PRIMARY KEY", "id"))));
+        assertEquals("DROP INDEX `uk_name`", render(sb -> DdlRenderer.appendDropIndex(sb, unique)));
+    }
+
+    @Test
+    void createTableWithoutIndexTest() throws IOException {
+        Table table = new Table();
+        table.setTableName("log");
+        table.setTableEngine("InnoDB");
+        table.setCharset("utf8mb4");
+        table.setTableComment("日志");
+        table.setColumnList(new ArrayList<>(List.of(column("id", "bigint", false, null, "", ""), column("msg", "varchar(255)", true, null, "", ""))));
+        table.setIndexList(new ArrayList<>());
+        // 直接写入 Writer
+        StringWriter writer = new StringWriter();
+        DdlRenderer.appendCreateTable(writer, "app", table);
+        assertEquals("CREATE TABLE `app`.`log` (\n" +
+                "  `id` bigint NOT NULL COMMENT '',\n" +
+                "  `msg` varchar(255) DEFAULT NULL COMMENT ''\n" +
+                ") ENGINE=InnoDB AUTO_INCREMENT=0 DEFAULT CHARSET=utf8mb4 COMMENT='日志';\n", writer.toString());
+    }
+
+    private static String render(Render render) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        render.accept(builder);
+        return builder.toString();
+    }
+
+    private interface Render {
+        void accept(StringBuilder builder) throws IOException;
+    }
+}
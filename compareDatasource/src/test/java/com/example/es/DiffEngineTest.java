@@ -0,0 +1,383 @@
+package com.example.es;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.diff.AsyncFileDiffListener;
+import com.wind.compare.datasource.diff.CostSplitDiffSink;
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.diff.DiffSink;
+import com.wind.compare.datasource.diff.DiffStatement;
+import com.wind.compare.datasource.diff.MigrationCost;
+import com.wind.compare.datasource.diff.RenameDetector;
+import com.wind.compare.datasource.diff.TableDiffEvent;
+import com.wind.compare.datasource.diff.WriterDiffSink;
+import com.wind.compare.datasource.enums.AlterCostLevel;
+import com.wind.compare.datasource.enums.DiffKind;
+import com.wind.compare.datasource.pojo.datasource.Column;
+import com.wind.compare.datasource.pojo.datasource.Index;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Schema;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 差异对比引擎测试(不依赖数据库)
+ */
+class DiffEngineTest {
+
+    private static final ForkJoinPool DIFF_POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void destroy() {
+        DIFF_POOL.shutdown();
+    }
+
+    @Test
+    void parallelDiffIsDeterministicTest() {
+        SQLTableJSON base = buildSqlTableJson(6, 200);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        // 制造差异：删库、删表、删字段、改字段、改索引
+        compare.getSchemaMap().remove("schema_5");
+        compare.getSchemaMap().get("schema_0").getTableMap().remove("table_7");
+        for (int i = 0; i < 200; i += 3) {
+            Table table = compare.getSchemaMap().get("schema_1").getTableMap().get("table_" + i);
+            table.getColumnList().remove(2);
+            table.getColumnList().get(1).setColumnType("varchar(64)");
+            table.getIndexList().get(0).setIndexType("HASH");
+        }
+
+        List<String> serial = new DiffEngine(null).compareDiffDataSource(base, compare);
+        List<String> parallel = new DiffEngine(DIFF_POOL).compareDiffDataSource(base, compare);
+        List<String> parallelAgain = new DiffEngine(DIFF_POOL).compareDiffDataSource(base, compare);
+
+        // 67张改动表 + 1张缺失表 + 缺失库的200张表
+        assertEquals(67 + 1 + 200, serial.size());
+        assertEquals(serial, parallel);
+        assertEquals(parallel, parallelAgain);
+        // 交集库在前、差集库在后
+        assertTrue(serial.get(0).contains("`schema_0`.`table_7`"));
+        assertTrue(serial.get(serial.size() - 1).contains("`schema_5`."));
+    }
+
+    @Test
+    void identicalDataSourceTest() {
+        SQLTableJSON base = buildSqlTableJson(3, 50);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        assertEquals(Collections.emptyList(), new DiffEngine(DIFF_POOL).compareDiffDataSource(base, compare));
+    }
+
+    @Test
+    void fingerprintShortCircuitTest() {
+        SQLTableJSON base = buildSqlTableJson(4, 100);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        compare.getSchemaMap().get("schema_2").getTableMap().get("table_9").getColumnList().get(3).setColumnComment("changed");
+        // 字段顺序不影响指纹
+        Collections.reverse(compare.getSchemaMap().get("schema_3").getTableMap().get("table_1").getColumnList());
+        List<String> withoutFingerprint = new DiffEngine(null).compareDiffDataSource(base, compare);
+
+        FingerprintUtils.fill(base, false);
+        FingerprintUtils.fill(compare, false);
+        assertEquals(base.getSchemaMap().get("schema_0").getFingerprint(), compare.getSchemaMap().get("schema_0").getFingerprint());
+        assertEquals(base.getSchemaMap().get("schema_3").getFingerprint(), compare.getSchemaMap().get("schema_3").getFingerprint());
+        assertNotEquals(base.getSchemaMap().get("schema_2").getFingerprint(), compare.getSchemaMap().get("schema_2").getFingerprint());
+
+        List<String> withFingerprint = new DiffEngine(DIFF_POOL).compareDiffDataSource(base, compare);
+        assertEquals(1, withFingerprint.size());
+        assertEquals(withoutFingerprint, withFingerprint);
+    }
+
+    @Test
+    void streamingSinkTest() {
+        SQLTableJSON base = buildSqlTableJson(3, 100);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        compare.getSchemaMap().remove("schema_2");
+        for (int i = 0; i < 100; i += 2) {
+            compare.getSchemaMap().get("schema_0").getTableMap().get("table_" + i).getColumnList().get(1).setColumnType("text");
+        }
+        List<String> expected = new DiffEngine(null).compareDiffDataSource(base, compare);
+
+        // 窗口很小时也要按顺序逐条输出，每个窗口结束时 flush 一次
+        List<DiffStatement> statementList = new ArrayList<>();
+        AtomicInteger flushCount = new AtomicInteger();
+        int count = new DiffEngine(DIFF_POOL, 16).compareDiffDataSource(base, compare, new DiffSink() {
+            @Override
+            public void accept(DiffStatement statement) {
+                statementList.add(statement);
+            }
+
+            @Override
+            public void flush() {
+                flushCount.incrementAndGet();
+            }
+        });
+        assertEquals(50 + 100, count);
+        assertEquals(expected, statementList.stream().map(DiffStatement::getSql).collect(Collectors.toList()));
+        assertEquals(DiffKind.ALTER_TABLE, statementList.get(0).getKind());
+        assertEquals(DiffKind.CREATE_TABLE, statementList.get(count - 1).getKind());
+        assertEquals("schema_2", statementList.get(count - 1).getSchemaName());
+        // 没有指纹时交集表也要逐张对比：300张表，按16张一个窗口
+        assertEquals((300 + 15) / 16, flushCount.get());
+
+        StringWriter writer = new StringWriter();
+        new DiffEngine(DIFF_POOL).compareDiffDataSource(base, compare, new WriterDiffSink(writer));
+        assertEquals(String.join(System.lineSeparator(), expected) + System.lineSeparator(), writer.toString());
+    }
+
+    @Test
+    void diffListenerTest(@TempDir Path tempDir) throws Exception {
+        SQLTableJSON base = buildSqlTableJson(2, 50);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        compare.getSchemaMap().get("schema_0").getTableMap().remove("table_3");
+        Table table = compare.getSchemaMap().get("schema_1").getTableMap().get("table_8");
+        table.getColumnList().remove(2);
+        table.getColumnList().get(1).setColumnType("text");
+        table.getIndexList().remove(1);
+
+        // 事件与语句一一对应，按输出顺序回调
+        List<TableDiffEvent> eventList = new ArrayList<>();
+        List<String> sqlList = new ArrayList<>();
+        new DiffEngine(DIFF_POOL, 16, eventList::add).compareDiffDataSource(base, compare, statement -> sqlList.add(statement.getSql()));
+        assertEquals(2, eventList.size());
+        assertEquals(sqlList.size(), eventList.size());
+        TableDiffEvent createEvent = eventList.get(0);
+        assertEquals(DiffKind.CREATE_TABLE, createEvent.getKind());
+        assertEquals("table_3", createEvent.getTableName());
+        assertEquals(10, createEvent.getAddedColumns().size());
+        TableDiffEvent alterEvent = eventList.get(1);
+        assertEquals("schema_1", alterEvent.getSchemaName());
+        assertEquals(List.of("col_0"), alterEvent.getModifiedColumns());
+        assertEquals(List.of("col_1"), alterEvent.getAddedColumns());
+        assertEquals(List.of("idx_col_0"), alterEvent.getAddedIndexes());
+        assertEquals(alterEvent.getRunId(), createEvent.getRunId());
+
+        // 异步写文件：关闭时等待全部写完
+        Path file = tempDir.resolve("events/diff-events.log");
+        AsyncFileDiffListener fileListener = new AsyncFileDiffListener(file, 1);
+        new DiffEngine(DIFF_POOL, 16, fileListener).compareDiffDataSource(base, compare, statement -> { });
+        fileListener.close();
+        List<String> lineList = Files.readAllLines(file);
+        assertEquals(2, lineList.size());
+        assertEquals("table_8", JSON.parseObject(lineList.get(1)).getString("tableName"));
+    }
+
+    @Test
+    void createSqlCaptureTest() {
+        SQLTableJSON base = buildSqlTableJson(1, 3);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        compare.getSchemaMap().get("schema_0").getTableMap().remove("table_2");
+        Map<String, Table> baseTableMap = base.getSchemaMap().get("schema_0").getTableMap();
+        Map<String, Table> compareTableMap = compare.getSchemaMap().get("schema_0").getTableMap();
+        String ddl = "CREATE TABLE `%s` (\n  `id` bigint NOT NULL AUTO_INCREMENT,\n  PRIMARY KEY (`id`)\n) ENGINE=InnoDB AUTO_INCREMENT=%d DEFAULT CHARSET=utf8mb4";
+        // table_0：只有自增计数不同，规范化后一致
+        setCreateSql(baseTableMap.get("table_0"), String.format(ddl, "table_0", 100));
+        setCreateSql(compareTableMap.get("table_0"), String.format(ddl, "table_0", 7));
+        assertEquals(baseTableMap.get("table_0").getCreateSqlHash(), compareTableMap.get("table_0").getCreateSqlHash());
+        assertTrue(!baseTableMap.get("table_0").getCreateSql().contains("AUTO_INCREMENT=") && baseTableMap.get("table_0").getCreateSql().contains("AUTO_INCREMENT,"));
+        // table_1：字段、索引一致，建表语句不同(摘要不同不作为有差异的依据)
+        setCreateSql(baseTableMap.get("table_1"), String.format(ddl, "table_1", 1) + "\nPARTITION BY HASH (`id`) PARTITIONS 4");
+        setCreateSql(compareTableMap.get("table_1"), String.format(ddl, "table_1", 1));
+        // 不同版本输出的写法不同，摘要一致
+        assertEquals(FingerprintUtils.createSqlHash("CREATE TABLE `t` (\n  `id` int(11) NOT NULL,\n  `name` varchar(32) CHARACTER SET utf8 COLLATE utf8_bin\n) ENGINE=InnoDB DEFAULT CHARSET=utf8"),
+                FingerprintUtils.createSqlHash("CREATE TABLE `t` (\n  `id` int NOT NULL,\n  `name` varchar(32) CHARACTER SET utf8mb3 COLLATE utf8mb3_bin\n) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_general_ci"));
+        // table_2：缺失的表原样输出基准库的建表语句
+        setCreateSql(baseTableMap.get("table_2"), String.format(ddl, "table_2", 1));
+        // 字段有差异但建表语句一致时以建表语句为准
+        compareTableMap.get("table_0").getColumnList().get(1).setColumnType("text");
+        FingerprintUtils.fill(base, false);
+        FingerprintUtils.fill(compare, false);
+
+        // 摘要不参与库指纹
+        assertEquals(base.getSchemaMap().get("schema_0").getFingerprint(), FingerprintUtils.schemaFingerprint(base.getSchemaMap().get("schema_0")));
+        baseTableMap.get("table_1").setCreateSqlHash(null);
+        assertEquals(base.getSchemaMap().get("schema_0").getFingerprint(), FingerprintUtils.schemaFingerprint(base.getSchemaMap().get("schema_0")));
+
+        List<String> sqlList = new DiffEngine(DIFF_POOL).compareDiffDataSource(base, compare);
+        assertEquals(1, sqlList.size());
+        assertEquals("CREATE TABLE `schema_0`." + String.format(ddl, "table_2", 1).replace(" AUTO_INCREMENT=1", "").substring("CREATE TABLE ".length()) + ";\n", sqlList.get(0));
+    }
+
+    @Test
+    void renameDetectionTest() {
+        SQLTableJSON base = buildSqlTableJson(1, 10);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        Map<String, Table> compareTableMap = compare.getSchemaMap().get("schema_0").getTableMap();
+        // 当前库的 table_3 叫 tb_3(结构完全一致)
+        Table renamedTable = compareTableMap.remove("table_3");
+        renamedTable.setTableName("tb_3");
+        compareTableMap.put("tb_3", renamedTable);
+        // 当前库 table_5 的 col_1 叫 col_one，索引也跟着引用旧名称
+        Table table5 = compareTableMap.get("table_5");
+        table5.getColumnList().get(2).setColumnName("col_one");
+        table5.getIndexList().get(1).setIndexColumnList(new ArrayList<>(List.of("col_0", "col_one")));
+
+        List<TableDiffEvent> eventList = Collections.synchronizedList(new ArrayList<>());
+        List<DiffStatement> statementList = new ArrayList<>();
+        new DiffEngine(DIFF_POOL, 4, eventList::add, 0.8).compareDiffDataSource(base, compare, statementList::add);
+        assertEquals(2, statementList.size());
+        // 改名只以注释给出建议，仍然新增字段、新建表
+        String alterSql = statementList.get(0).getSql();
+        assertTrue(alterSql.startsWith("-- 疑似字段改名(置信度 1.00)，确认是改名时用下面的语句代替 ADD COLUMN `col_1`：\n"
+                + "-- ALTER TABLE `schema_0`.`table_5` RENAME COLUMN `col_one` TO `col_1`;\n"));
+        assertTrue(alterSql.contains("ADD COLUMN  `col_1`") && alterSql.contains("DROP INDEX `idx_col_0`"));
+        assertEquals(DiffKind.CREATE_TABLE, statementList.get(1).getKind());
+        assertTrue(statementList.get(1).getSql().startsWith("-- 疑似表改名(置信度 1.00)，确认是改名时用下面的语句代替建表语句：\n"
+                + "-- RENAME TABLE `schema_0`.`tb_3` TO `schema_0`.`table_3`;\nCREATE TABLE `schema_0`.`table_3`"));
+        assertEquals("tb_3", eventList.get(1).getRenamedTable().getOldName());
+        assertEquals("col_one", eventList.get(0).getRenamedColumns().get(0).getOldName());
+
+        // 默认关闭改名检测，没有建议
+        List<String> sqlList = new DiffEngine(null, 4).compareDiffDataSource(base, compare);
+        assertTrue(sqlList.get(0).startsWith("ALTER TABLE `schema_0`.`table_5`"));
+        assertTrue(sqlList.get(1).startsWith("CREATE TABLE `schema_0`.`table_3`"));
+
+        // 结构一样但注释不同的表、字段不算改名(user_tag/customer_label、created_by/updated_by)
+        Table unrelated = JSON.parseObject(JSON.toJSONString(renamedTable), Table.class);
+        unrelated.setTableName("table_3x");
+        unrelated.setTableComment("另一张表");
+        assertTrue(RenameDetector.detectTables(List.of(base.getSchemaMap().get("schema_0").getTableMap().get("table_3")), List.of(unrelated), 0).isEmpty());
+        List<Column> columnCompareList = new ArrayList<>(List.of(column("id", "bigint", false, null, "", ""), column("created_by", "bigint", true, null, "", "创建人")));
+        List<Column> columnBaseList = new ArrayList<>(List.of(column("id", "bigint", false, null, "", ""), column("updated_by", "bigint", true, null, "", "修改人")));
+        Map<String, Column> columnCompareMap = columnCompareList.stream().collect(Collectors.toMap(Column::getColumnName, c -> c));
+        assertTrue(RenameDetector.detectColumns(columnBaseList, columnCompareList, columnCompareMap, 0).isEmpty());
+
+        // 名称只差数字的分表不算改名
+        Table shard = JSON.parseObject(JSON.toJSONString(renamedTable), Table.class);
+        shard.setTableName("tb_4");
+        assertTrue(RenameDetector.detectTables(List.of(renamedTable), List.of(shard), 0).isEmpty());
+    }
+
+    @Test
+    void migrationCostTest() {
+        SQLTableJSON base = buildSqlTableJson(1, 3);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        Map<String, Table> compareTableMap = compare.getSchemaMap().get("schema_0").getTableMap();
+        // table_0：3 GB 的大表改字段类型，要重建表
+        Table table0 = compareTableMap.get("table_0");
+        table0.setTableRows(50000000L);
+        table0.setDataLength(2L << 30);
+        table0.setIndexLength(1L << 30);
+        table0.getColumnList().get(1).setColumnType("varchar(16)");
+        // table_1：只改注释，只修改元数据
+        Table table1 = compareTableMap.get("table_1");
+        table1.setDataLength(10L << 20);
+        table1.getColumnList().get(1).setColumnComment("旧注释");
+        // table_2：没有采集表大小，不估算
+        compareTableMap.get("table_2").getIndexList().remove(1);
+
+        List<DiffStatement> statementList = new ArrayList<>();
+        new DiffEngine(DIFF_POOL).compareDiffDataSource(base, compare, new CostSplitDiffSink(statementList::add, 1L << 30));
+        // 重型变更排在最后
+        assertEquals(List.of("table_1", "table_2", "table_0"), statementList.stream().map(DiffStatement::getTableName).collect(Collectors.toList()));
+        assertEquals(AlterCostLevel.METADATA, statementList.get(0).getCost().getLevel());
+        assertTrue(statementList.get(0).getSql().startsWith("-- 预估代价：仅修改元数据\nALTER TABLE"));
+        assertNull(statementList.get(1).getCost());
+        MigrationCost cost = statementList.get(2).getCost();
+        assertEquals(AlterCostLevel.REBUILD, cost.getLevel());
+        assertEquals(3L << 30, cost.getBytes());
+        assertTrue(statementList.get(2).getSql().startsWith("-- ===================="));
+        assertTrue(statementList.get(2).getSql().contains("-- 预估代价：重建表，约 3 GB，约 50000000 行\n"));
+
+        // 新增字段追加在末尾(INSTANT)只修改元数据；自增列要重建表
+        Table tableBase = base.getSchemaMap().get("schema_0").getTableMap().get("table_0");
+        tableBase.getColumnList().add(column("remark", "varchar(64)", true, null, "", "备注"));
+        Table tableCompare = JSON.parseObject(JSON.toJSONString(tableBase), Table.class);
+        tableCompare.getColumnList().remove(tableCompare.getColumnList().size() - 1);
+        tableCompare.setDataLength(2L << 30);
+        Map<String, Table> tableMap = compare.getSchemaMap().get("schema_0").getTableMap();
+        tableMap.clear();
+        tableMap.put("table_0", tableCompare);
+        base.getSchemaMap().get("schema_0").getTableMap().keySet().retainAll(List.of("table_0"));
+        FingerprintUtils.fill(base, false);
+        FingerprintUtils.fill(compare, false);
+        statementList.clear();
+        new DiffEngine(null).compareDiffDataSource(base, compare, statementList::add);
+        assertEquals(AlterCostLevel.METADATA, statementList.get(0).getCost().getLevel());
+        tableBase.getColumnList().get(tableBase.getColumnList().size() - 1).setExtra("auto_increment");
+        FingerprintUtils.fill(base, false);
+        statementList.clear();
+        new DiffEngine(null).compareDiffDataSource(base, compare, statementList::add);
+        assertEquals(AlterCostLevel.REBUILD, statementList.get(0).getCost().getLevel());
+    }
+
+    private static void setCreateSql(Table table, String createSql) {
+        table.setCreateSql(FingerprintUtils.normalizeCreateSql(createSql));
+        table.setCreateSqlHash(FingerprintUtils.createSqlHash(table.getCreateSql()));
+    }
+
+    /**
+     * 构造测试用的库表结构
+     * @param schemaCount   库数量
+     * @param tableCount    每个库的表数量
+     * @return
+     */
+    static SQLTableJSON buildSqlTableJson(int schemaCount, int tableCount) {
+        SQLTableJSON sqlTableJson = new SQLTableJSON().setConnectionAlias("test");
+        sqlTableJson.setSchemaMap(new HashMap<>());
+        for (int s = 0; s < schemaCount; s++) {
+            Schema schema = new Schema();
+            schema.setSchemaName("schema_" + s);
+            schema.setDefaultCharacterName("utf8mb4");
+            schema.setTableMap(new HashMap<>());
+            for (int t = 0; t < tableCount; t++) {
+                Table table = new Table();
+                table.setTableName("table_" + t);
+                table.setTableEngine("InnoDB");
+                table.setTableCollation("utf8mb4_general_ci");
+                table.setCharset("utf8mb4");
+                table.setTableComment("表" + t);
+                table.setColumnList(new ArrayList<>());
+                table.setIndexList(new ArrayList<>());
+                table.getColumnList().add(column("id", "bigint(20)", false, null, "auto_increment", "主键"));
+                for (int c = 0; c < 8; c++) {
+                    table.getColumnList().add(column("col_" + c, "varchar(" + (32 + c) + ")", true, null, "", "字段" + c));
+                }
+                table.getColumnList().add(column("create_time", "datetime", false, "CURRENT_TIMESTAMP", "DEFAULT_GENERATED", "创建时间"));
+                table.getIndexList().add(index("PRIMARY", "PRIMARY KEY", "id"));
+                table.getIndexList().add(index("idx_col_0", null, "col_0", "col_1"));
+                schema.getTableMap().put(table.getTableName(), table);
+            }
+            sqlTableJson.getSchemaMap().put(schema.getSchemaName(), schema);
+        }
+        return sqlTableJson;
+    }
+
+    static Column column(String name, String type, boolean nullable, String columnDefault, String extra, String comment) {
+        Column column = new Column();
+        column.setColumnName(name);
+        column.setColumnType(type);
+        column.setIsNullable(nullable);
+        column.setColumnDefault(columnDefault);
+        column.setExtra(extra);
+        column.setColumnComment(comment);
+        return column;
+    }
+
+    static Index index(String name, String constraintType, String... columns) {
+        Index index = new Index();
+        index.setIndexName(name);
+        index.setConstraintType(constraintType);
+        index.setIndexType("BTREE");
+        index.setIndexColumnList(new ArrayList<>(List.of(columns)));
+        index.setIndexComment("");
+        return index;
+    }
+}
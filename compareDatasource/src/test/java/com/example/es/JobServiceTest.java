@@ -0,0 +1,204 @@
+package com.example.es;
+
+import com.wind.compare.datasource.config.CompareMetrics;
+import com.wind.compare.datasource.config.ExecutorMetricsConfig;
+import com.wind.compare.datasource.config.ThreadPoolConfig;
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.diff.DiffSink;
+import com.wind.compare.datasource.diff.WriterDiffSink;
+import com.wind.compare.datasource.enums.JobStatus;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.dto.DatasourceSettingDto;
+import com.wind.compare.datasource.pojo.job.CompareJob;
+import com.wind.compare.datasource.pojo.job.JobProgress;
+import com.wind.compare.datasource.service.CompareDataSourceService;
+import com.wind.compare.datasource.service.impl.JobServiceImpl;
+import com.wind.compare.datasource.utils.AESUtils;
+import com.wind.compare.datasource.utils.SnapshotUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 异步任务测试(抽取用 mock 代替，不依赖数据库)
+ */
+class JobServiceTest {
+
+    private static final String PASSWORD = "job-test";
+
+    @TempDir
+    Path tempDir;
+
+    private CompareDataSourceService compareDataSourceService;
+    private ThreadPoolExecutor jobPool;
+    private JobServiceImpl jobService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() throws Exception {
+        compareDataSourceService = mock(CompareDataSourceService.class);
+        jobPool = new ThreadPoolConfig().jobPool(1, 1);
+        jobService = new JobServiceImpl();
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(jobService, "compareDataSourceService", compareDataSourceService);
+        ReflectionTestUtils.setField(jobService, "compareMetrics", new CompareMetrics(meterRegistry));
+        ReflectionTestUtils.setField(jobService, "jobPool", jobPool);
+        ReflectionTestUtils.setField(jobService, "commonThreadPool", Executors.newSingleThreadExecutor());
+        ReflectionTestUtils.setField(jobService, "jobDir", tempDir.resolve("jobs").toString());
+        ReflectionTestUtils.setField(jobService, "retention", Duration.ofHours(1));
+        ReflectionTestUtils.setField(jobService, "cleanupInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(jobService, "snapshotFormat", "binary");
+        ReflectionTestUtils.setField(jobService, "snapshotCompress", true);
+        jobService.init();
+    }
+
+    @AfterEach
+    void destroy() {
+        jobService.destroy();
+        jobPool.shutdownNow();
+    }
+
+    @Test
+    void exportJobTest() throws Exception {
+        SQLTableJSON snapshot = DiffEngineTest.buildSqlTableJson(2, 30);
+        when(compareDataSourceService.generateJsonTable(any(DatasourceSettingDto.class), isNull(), any(JobProgress.class))).thenAnswer(invocation -> {
+            JobProgress progress = invocation.getArgument(2);
+            progress.start("抽取字段、索引", 2, 60);
+            progress.tablesProcessed(60);
+            return snapshot;
+        });
+
+        CompareJob job = jobService.submitExport(DatasourceSettingDto.builder().build(), PASSWORD);
+        awaitFinished(job);
+
+        assertEquals(JobStatus.SUCCESS, job.getStatus());
+        assertTrue(job.getFinishTime() != null);
+        try (InputStream in = AESUtils.decryptInputStream(Files.newInputStream(job.getArtifact()), PASSWORD)){
+            assertEquals(snapshot.getSchemaMap().keySet(), SnapshotUtils.readSnapshot(in).getSchemaMap().keySet());
+        }
+        // 写出的字节数、耗时
+        assertEquals(Files.size(job.getArtifact()), meterRegistry.get("compare.snapshot.bytes").tag("op", "write").counter().count());
+        assertEquals(1, meterRegistry.get("compare.snapshot.write").timer().count());
+    }
+
+    @Test
+    void liveCompareTest() throws Exception {
+        SQLTableJSON base = DiffEngineTest.buildSqlTableJson(2, 30);
+        SQLTableJSON compare = DiffEngineTest.buildSqlTableJson(2, 30);
+        compare.getSchemaMap().get("schema_1").getTableMap().remove("table_7");
+        DatasourceSettingDto baseSetting = DatasourceSettingDto.builder().connectionAlias("base").build();
+        DatasourceSettingDto compareSetting = DatasourceSettingDto.builder().connectionAlias("compare").build();
+        // 两边都开始抽取后才能返回：串行执行时会超时
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        when(compareDataSourceService.generateJsonTable(baseSetting)).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            return base;
+        });
+        when(compareDataSourceService.generateJsonTable(any(DatasourceSettingDto.class), isNull(), any(JobProgress.class))).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            return compare;
+        });
+        when(compareDataSourceService.compareDiffDataSource(any(SQLTableJSON.class), any(SQLTableJSON.class), any(DiffSink.class))).thenAnswer(invocation ->
+                new DiffEngine(null).compareDiffDataSource(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+
+        CompareJob job = jobService.submitLiveCompare(baseSetting, compareSetting);
+        awaitFinished(job);
+
+        assertEquals(JobStatus.SUCCESS, job.getStatus(), job.getMessage());
+        String script = Files.readString(job.getArtifact());
+        assertTrue(script.contains("`schema_1`.`table_7`"));
+        // 最后一行是脚本结束标记
+        assertTrue(script.endsWith(WriterDiffSink.END_OF_SCRIPT + System.lineSeparator()));
+    }
+
+    @Test
+    void failedJobTest() throws Exception {
+        when(compareDataSourceService.generateJsonTable(any(DatasourceSettingDto.class), isNull(), any(JobProgress.class)))
+                .thenThrow(new IllegalStateException("无法连接数据库"));
+        CompareJob job = jobService.submitExport(DatasourceSettingDto.builder().build(), PASSWORD);
+        awaitFinished(job);
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals("无法连接数据库", job.getMessage());
+    }
+
+    @Test
+    void queueFullAndRetentionTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(compareDataSourceService.generateJsonTable(any(DatasourceSettingDto.class), isNull(), any(JobProgress.class))).thenAnswer(invocation -> {
+            release.await();
+            return DiffEngineTest.buildSqlTableJson(1, 1);
+        });
+        ExecutorMetricsConfig.bind(meterRegistry, jobPool, ThreadPoolConfig.JOB_POOL);
+        // 1个执行中 + 1个排队，第3个直接拒绝，且不留下任务目录
+        CompareJob running = jobService.submitExport(DatasourceSettingDto.builder().build(), PASSWORD);
+        CompareJob queued = jobService.submitExport(DatasourceSettingDto.builder().build(), PASSWORD);
+        assertThrows(RejectedExecutionException.class, () -> jobService.submitExport(DatasourceSettingDto.builder().build(), PASSWORD));
+        try (var stream = Files.list(tempDir.resolve("jobs"))) {
+            assertEquals(2, stream.count());
+        }
+        assertEquals(1, meterRegistry.get("compare.executor.rejected").tag("name", ThreadPoolConfig.JOB_POOL).counter().count());
+        assertEquals(1, meterRegistry.get("executor.queued").tag("name", ThreadPoolConfig.JOB_POOL).gauge().value());
+
+        release.countDown();
+        awaitFinished(running);
+        awaitFinished(queued);
+
+        // 未过期的任务保留，过期后连同结果文件一起清理
+        jobService.cleanExpiredJobs();
+        assertEquals(running, jobService.getJob(running.getJobId()));
+        ReflectionTestUtils.setField(jobService, "retention", Duration.ZERO);
+        jobService.cleanExpiredJobs();
+        assertNull(jobService.getJob(running.getJobId()));
+        assertNull(jobService.getJob(queued.getJobId()));
+        assertFalse(Files.exists(running.getJobDir()));
+    }
+
+    @Test
+    void initKeepsForeignFilesTest() throws Exception {
+        Path root = tempDir.resolve("jobs");
+        Path staleJobDir = Files.createDirectories(root.resolve("0123456789abcdef0123456789abcdef"));
+        Files.writeString(staleJobDir.resolve("result.txt"), "stale");
+        Path foreignDir = Files.createDirectories(root.resolve("keep"));
+        Path foreignFile = Files.writeString(root.resolve("notes.txt"), "keep");
+
+        // 重启：只删除遗留的任务目录，compare.job.dir 下的其他文件不动
+        jobService.destroy();
+        jobService.init();
+        assertFalse(Files.exists(staleJobDir));
+        assertTrue(Files.isDirectory(foreignDir));
+        assertTrue(Files.exists(foreignFile));
+    }
+
+    private static void awaitFinished(CompareJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!job.getStatus().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.getStatus().isFinished());
+    }
+}
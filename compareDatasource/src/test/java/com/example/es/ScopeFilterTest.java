@@ -0,0 +1,97 @@
+package com.example.es;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import com.wind.compare.datasource.utils.ScopeFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对比范围测试
+ */
+class ScopeFilterTest {
+
+    @Test
+    void matchTest() {
+        ScopeFilter filter = ScopeFilter.of(Arrays.asList("app_*", "regex:report_\\d+"), Collections.singletonList("app_?_bak"),
+                null, Arrays.asList("tmp_*", "t_log"));
+        assertTrue(filter.acceptSchema("app_order"));
+        assertTrue(filter.acceptSchema("APP_USER"));
+        assertTrue(filter.acceptSchema("report_2024"));
+        assertFalse(filter.acceptSchema("report_x"));
+        assertFalse(filter.acceptSchema("app_1_bak"));
+        assertFalse(filter.acceptSchema("mysql"));
+        assertTrue(filter.acceptTable("t_order"));
+        assertFalse(filter.acceptTable("tmp_order"));
+        // _ 按字面量匹配
+        assertFalse(filter.acceptTable("t_log"));
+        assertTrue(filter.acceptTable("txlog"));
+        assertSame(ScopeFilter.ALL, ScopeFilter.of(null, Collections.singletonList(" "), null, null));
+    }
+
+    @Test
+    void sqlConditionTest() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:scope_filter;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE TABLES_META(TABLE_SCHEMA VARCHAR(64), TABLE_NAME VARCHAR(64))");
+        for (String schemaName : new String[]{"app_order", "App_User", "app_1_bak", "report_2024", "mysql", "app%x"}) {
+            for (String tableName : new String[]{"t_order", "tmp_order", "T_USER"}) {
+                jdbcTemplate.update("INSERT INTO TABLES_META VALUES (?, ?)", schemaName, tableName);
+            }
+        }
+        ScopeFilter filter = ScopeFilter.of(Collections.singletonList("app_*"), Collections.singletonList("app_?_bak"), null, Collections.singletonList("TMP_*"));
+        List<Object> params = new ArrayList<>();
+        String condition = filter.toSqlCondition("TABLE_SCHEMA", "TABLE_NAME", params);
+        Set<String> pushedDown = new TreeSet<>(jdbcTemplate.queryForList("SELECT CONCAT(TABLE_SCHEMA, '.', TABLE_NAME) FROM TABLES_META WHERE 1 = 1" + condition, String.class, params.toArray()));
+        Set<String> expected = new TreeSet<>(jdbcTemplate.queryForList("SELECT CONCAT(TABLE_SCHEMA, '.', TABLE_NAME) FROM TABLES_META", String.class));
+        expected.removeIf(name -> !filter.acceptSchema(name.substring(0, name.indexOf('.'))) || !filter.acceptTable(name.substring(name.indexOf('.') + 1)));
+        // 下推的 LIKE 条件与内存中的匹配结果一致(_ 和 % 按字面量匹配)
+        assertEquals(expected, pushedDown);
+        assertEquals(4, pushedDown.size());
+
+        // 包含规则中有正则时不下推包含条件
+        params.clear();
+        assertEquals("", ScopeFilter.of(Collections.singletonList("regex:app_.*"), null, null, null).toSqlCondition("TABLE_SCHEMA", "TABLE_NAME", params));
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void applyToBaselineTest() {
+        SQLTableJSON base = DiffEngineTest.buildSqlTableJson(4, 20);
+        FingerprintUtils.fill(base, false);
+        SQLTableJSON compare = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        compare.getSchemaMap().remove("schema_3");
+        compare.getSchemaMap().get("schema_0").getTableMap().remove("table_1");
+        compare.getSchemaMap().get("schema_0").getTableMap().remove("table_5");
+        FingerprintUtils.fill(compare, false);
+
+        // 对比库只导出了 schema_0、schema_1 中除 table_1* 以外的表
+        ScopeFilter filter = ScopeFilter.of(Arrays.asList("schema_0", "schema_1"), null, null, Collections.singletonList("table_1*"));
+        SQLTableJSON filteredBase = filter.apply(base);
+        SQLTableJSON filteredCompare = filter.apply(compare);
+        assertEquals(new TreeSet<>(Arrays.asList("schema_0", "schema_1")), filteredBase.getSchemaMap().keySet());
+        assertEquals(9, filteredBase.getSchemaMap().get("schema_1").getTableMap().size());
+        // 原对象不变
+        assertEquals(4, base.getSchemaMap().size());
+        assertEquals(20, base.getSchemaMap().get("schema_1").getTableMap().size());
+        // 范围外的差异不再输出，库指纹按过滤后的表重新计算
+        List<String> diff = new DiffEngine(null).compareDiffDataSource(filteredBase, filteredCompare);
+        assertEquals(1, diff.size());
+        assertTrue(diff.get(0).contains("`schema_0`.`table_5`"));
+        assertEquals(filteredBase.getSchemaMap().get("schema_1").getFingerprint(), filteredCompare.getSchemaMap().get("schema_1").getFingerprint());
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.es;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.diff.DiffEngine;
+import com.wind.compare.datasource.enums.DatasourceDriveType;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.pojo.snapshot.SnapshotManifest;
+import com.wind.compare.datasource.service.impl.SnapshotStoreServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 服务端快照库测试
+ */
+class SnapshotStoreServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SnapshotStoreServiceImpl snapshotStore;
+
+    @BeforeEach
+    void init() throws IOException {
+        snapshotStore = new SnapshotStoreServiceImpl();
+        ReflectionTestUtils.setField(snapshotStore, "storeDir", tempDir.toString());
+        ReflectionTestUtils.setField(snapshotStore, "cacheSize", 2);
+        snapshotStore.init();
+    }
+
+    @Test
+    void saveAndLoadTest() throws IOException {
+        SQLTableJSON base = DiffEngineTest.buildSqlTableJson(3, 40);
+        base.setConnectionConfig(DatasourceDriveType.MYSQL, "127.0.0.1", 3306, "root", "secret");
+        SnapshotManifest manifest = snapshotStore.save(base);
+        assertEquals(3, manifest.getSchemaCount());
+        assertEquals(120, manifest.getTableCount());
+        // 密码不落盘
+        assertFalse(readAll(tempDir).contains("secret"));
+
+        SQLTableJSON loaded = snapshotStore.load(manifest.getSnapshotId());
+        assertNull(loaded.getConnectionConfig().getPassword());
+        assertEquals(Collections.emptyList(), new DiffEngine(null).compareDiffDataSource(base, loaded));
+        assertEquals(Collections.emptyList(), new DiffEngine(null).compareDiffDataSource(loaded, base));
+        // 再次读取直接命中缓存
+        assertSame(loaded, snapshotStore.load(manifest.getSnapshotId()));
+        assertNull(snapshotStore.load("not-exists"));
+    }
+
+    @Test
+    void deduplicationTest() throws IOException {
+        // 3个库的表结构完全相同，只存一份
+        SQLTableJSON base = DiffEngineTest.buildSqlTableJson(3, 40);
+        SnapshotManifest first = snapshotStore.save(base);
+        assertEquals(40, countTables());
+
+        // 内容相同的快照id相同
+        SQLTableJSON copy = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        assertEquals(first.getSnapshotId(), snapshotStore.save(copy).getSnapshotId());
+
+        // 只改一张表，只新增一张表
+        copy.getSchemaMap().get("schema_1").getTableMap().get("table_3").getColumnList().get(1).setColumnType("text");
+        copy.getSchemaMap().get("schema_1").getTableMap().get("table_3").setFingerprint(null);
+        copy.getSchemaMap().get("schema_1").setFingerprint(null);
+        SnapshotManifest second = snapshotStore.save(copy);
+        assertNotEquals(first.getSnapshotId(), second.getSnapshotId());
+        assertEquals(41, countTables());
+        assertEquals(2, snapshotStore.list().size());
+
+        // 删除后清理只被它引用的表
+        assertTrue(snapshotStore.delete(second.getSnapshotId()));
+        assertEquals(40, countTables());
+        assertNull(snapshotStore.load(second.getSnapshotId()));
+        assertTrue(snapshotStore.delete(first.getSnapshotId()));
+        assertEquals(0, countTables());
+        assertFalse(snapshotStore.delete(first.getSnapshotId()));
+    }
+
+    @Test
+    void volatileStatsTest() throws IOException {
+        // 两次导出之间只有时间、行数、大小变化，表文件共用，统计信息按快照各自还原
+        SQLTableJSON base = DiffEngineTest.buildSqlTableJson(2, 10);
+        Table table = base.getSchemaMap().get("schema_0").getTableMap().get("table_1");
+        table.setCreateTime(new Date(1000L));
+        table.setUpdateTime(new Date(2000L));
+        table.setTableRows(10L);
+        table.setDataLength(16384L);
+        SnapshotManifest first = snapshotStore.save(base);
+        assertEquals(10, countTables());
+
+        SQLTableJSON copy = JSON.parseObject(JSON.toJSONString(base), SQLTableJSON.class);
+        Table copyTable = copy.getSchemaMap().get("schema_0").getTableMap().get("table_1");
+        copyTable.setUpdateTime(new Date(3000L));
+        copyTable.setTableRows(20L);
+        SnapshotManifest second = snapshotStore.save(copy);
+        assertNotEquals(first.getSnapshotId(), second.getSnapshotId());
+        assertEquals(10, countTables());
+
+        Map<String, Table> firstTableMap = snapshotStore.load(first.getSnapshotId()).getSchemaMap().get("schema_0").getTableMap();
+        Map<String, Table> secondTableMap = snapshotStore.load(second.getSnapshotId()).getSchemaMap().get("schema_0").getTableMap();
+        assertEquals(new Date(2000L), firstTableMap.get("table_1").getUpdateTime());
+        assertEquals(10L, firstTableMap.get("table_1").getTableRows());
+        assertEquals(new Date(3000L), secondTableMap.get("table_1").getUpdateTime());
+        assertEquals(20L, secondTableMap.get("table_1").getTableRows());
+        assertEquals(new Date(1000L), secondTableMap.get("table_1").getCreateTime());
+        assertEquals(16384L, secondTableMap.get("table_1").getDataLength());
+        // 同一个库中结构相同、没有统计信息的其他表不受影响
+        assertNull(secondTableMap.get("table_2").getUpdateTime());
+        // 另一个库中同结构的表没有统计信息
+        assertNull(snapshotStore.load(second.getSnapshotId()).getSchemaMap().get("schema_1").getTableMap().get("table_1").getTableRows());
+    }
+
+    private long countTables() throws IOException {
+        try (Stream<Path> pathStream = Files.walk(tempDir.resolve("tables"))) {
+            return pathStream.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static String readAll(Path dir) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        try (Stream<Path> pathStream = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) pathStream.filter(Files::isRegularFile)::iterator) {
+                builder.append(Files.readString(path));
+            }
+        }
+        return builder.toString();
+    }
+}
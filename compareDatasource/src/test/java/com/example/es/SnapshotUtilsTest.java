@@ -0,0 +1,82 @@
+package com.example.es;
+
+import com.alibaba.fastjson.JSON;
+import com.wind.compare.datasource.enums.DatasourceDriveType;
+import com.wind.compare.datasource.enums.SnapshotFormat;
+import com.wind.compare.datasource.pojo.datasource.SQLTableJSON;
+import com.wind.compare.datasource.pojo.datasource.Table;
+import com.wind.compare.datasource.utils.FingerprintUtils;
+import com.wind.compare.datasource.utils.SnapshotUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 快照 JSON/二进制格式读写测试
+ */
+class SnapshotUtilsTest {
+
+    @Test
+    void roundTripTest() throws IOException {
+        SQLTableJSON sqlTableJson = buildSnapshot();
+        // 原生建表语句、表大小、结构校验值
+        Table table = sqlTableJson.getSchemaMap().get("schema_0").getTableMap().get("table_0");
+        table.setCreateSql("CREATE TABLE `table_0` (\n  `id` bigint NOT NULL\n) ENGINE=InnoDB");
+        table.setCreateSqlHash(FingerprintUtils.createSqlHash(table.getCreateSql()));
+        table.setTableRows(1200L);
+        table.setDataLength(16384L);
+        table.setIndexLength(0L);
+        table.setStructureChecksum(-42L);
+        String expected = JSON.toJSONString(sqlTableJson);
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            for (boolean compress : new boolean[]{false, true}) {
+                SQLTableJSON parsed = SnapshotUtils.readSnapshot(new ByteArrayInputStream(write(sqlTableJson, format, compress)));
+                assertEquals(expected, JSON.toJSONString(parsed), format + " compress=" + compress);
+            }
+        }
+    }
+
+    @Test
+    void sizeTest() throws IOException {
+        SQLTableJSON sqlTableJson = buildSnapshot();
+        byte[] json = write(sqlTableJson, SnapshotFormat.JSON, false);
+        byte[] binary = write(sqlTableJson, SnapshotFormat.BINARY, false);
+        byte[] deflate = write(sqlTableJson, SnapshotFormat.BINARY, true);
+        // 解析耗时见 SnapshotFormatBenchmark；字段名不再重复、重复字符串只写下标
+        assertTrue(binary.length * 3 < json.length);
+        assertTrue(deflate.length < binary.length);
+    }
+
+    @Test
+    void unsupportedVersionTest() {
+        byte[] future = {'C', 'D', 'S', 'B', (byte) (SnapshotUtils.BINARY_VERSION + 1), 0};
+        assertThrows(IOException.class, () -> SnapshotUtils.readSnapshot(new ByteArrayInputStream(future)));
+        byte[] truncated = {'C', 'D', 'S', 'B', (byte) SnapshotUtils.BINARY_VERSION, 0, 1};
+        assertThrows(IOException.class, () -> SnapshotUtils.readSnapshot(new ByteArrayInputStream(truncated)));
+    }
+
+    private static SQLTableJSON buildSnapshot() {
+        SQLTableJSON sqlTableJson = DiffEngineTest.buildSqlTableJson(5, 400);
+        sqlTableJson.setConnectionConfig(DatasourceDriveType.MYSQL, "127.0.0.1", 3306, "root", "secret");
+        Table table = sqlTableJson.getSchemaMap().get("schema_0").getTableMap().get("table_0");
+        table.setCreateTime(new Date(1716336000000L));
+        table.setTableComment("很长的注释".repeat(100));
+        table.getColumnList().get(1).setIsNullable(null);
+        table.getIndexList().get(1).setIndexColumnList(null);
+        FingerprintUtils.fill(sqlTableJson, false);
+        return sqlTableJson;
+    }
+
+    private static byte[] write(SQLTableJSON sqlTableJson, SnapshotFormat format, boolean compress) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotUtils.writeSnapshot(out, sqlTableJson, format, compress);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.es;
+
+import com.wind.compare.datasource.config.ThreadPoolConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 线程池执行器模式测试
+ */
+class ThreadPoolConfigTest {
+
+    @Test
+    void platformModeQueuesInsteadOfRejectingTest() throws Exception {
+        ExecutorService executor = newConfig("platform").searchSql(4);
+        try {
+            assertTrue(executor instanceof ThreadPoolExecutor);
+            // 远超旧版本 4线程+20队列 的并发量，全部排队执行，不会抛 RejectedExecutionException
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            List<Future<?>> futureList = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futureList.add(executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    release.await();
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+            release.countDown();
+            for (Future<?> future : futureList) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertTrue(maxRunning.get() <= 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void autoModeTest() throws Exception {
+        ExecutorService executor = newConfig("auto").commonPool(4);
+        try {
+            String threadName = executor.submit(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+            assertTrue(threadName.startsWith(ThreadPoolConfig.COMMON_POOL + "_"));
+            // JDK 21 以下没有虚拟线程，回退为弹性线程池
+            assertEquals(Runtime.version().feature() < 21, executor instanceof ThreadPoolExecutor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ThreadPoolConfig newConfig(String mode) {
+        ThreadPoolConfig config = new ThreadPoolConfig();
+        ReflectionTestUtils.setField(config, "executorMode", mode);
+        ReflectionTestUtils.setField(config, "keepAlive", Duration.ofMinutes(1));
+        return config;
+    }
+}